@@ -0,0 +1,67 @@
+package fr.caladan.slickgraph;
+
+/**
+ * Inner loops of the binning and of the smoothing, over primitive arrays.
+ * The implementation using the Vector API is used when the JVM provides the jdk.incubator.vector module, the scalar one otherwise.
+ * Both give the same results, bit for bit.
+ */
+public abstract class ArrayKernels {
+
+	/** Name of the implementation using the Vector API, compiled apart as it needs a recent JDK */
+	protected static final String VECTOR_IMPLEMENTATION = "fr.caladan.slickgraph.VectorArrayKernels";
+
+	/** System property that can be set to false to use the scalar implementation */
+	public static final String VECTOR_PROPERTY = "slickgraph.vector";
+
+	/** Implementation in use, loaded on first use */
+	protected static ArrayKernels instance;
+
+	/** @return Implementation in use */
+	public static synchronized ArrayKernels get() {
+		if (instance == null) {
+			ArrayKernels vector = Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true")) ? load(VECTOR_IMPLEMENTATION) : null;
+			instance = vector != null ? vector : new ScalarArrayKernels();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Load an implementation by name
+	 *
+	 * @param className Name of the implementation class
+	 * @return Implementation, null if it is not available on this JVM
+	 */
+	public static ArrayKernels load(String className) {
+		try {
+			return (ArrayKernels) Class.forName(className).getDeclaredConstructor().newInstance();
+		} catch (Throwable e) {
+			// not compiled, older JVM or module not added
+			return null;
+		}
+	}
+
+	/**
+	 * Compute the histogram values from the indices of the events at the pixel bounds:
+	 * histogram[i] = (indices[i + 1] - indices[i]) / duration * nbTimeSlices
+	 *
+	 * @param indices Index of the first event at or after each bound, one more than the histogram values
+	 * @param duration Duration of the time window
+	 * @param nbTimeSlices Number of time slices of the time window
+	 * @param histogram Output array receiving the histogram values
+	 */
+	public abstract void differences(long[] indices, double duration, double nbTimeSlices, double[] histogram);
+
+	/**
+	 * Convolve a histogram with a centered kernel, the values outside of the histogram being ignored:
+	 * smoothed[i] = sum over k of histogram[i + k - kernel.length / 2] * kernel[k], summed by increasing k
+	 *
+	 * @param histogram Histogram values
+	 * @param kernel Kernel values, of odd length
+	 * @param smoothed Output array receiving the smoothed values
+	 * @param from Index of the first value to compute
+	 * @param to Index after the last value to compute
+	 */
+	public abstract void convolve(double[] histogram, double[] kernel, double[] smoothed, int from, int to);
+
+}
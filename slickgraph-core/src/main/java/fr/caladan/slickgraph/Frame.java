@@ -0,0 +1,90 @@
+package fr.caladan.slickgraph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything needed to draw the graph and to answer the pointer, computed off the JavaFX thread.
+ * A frame is never modified once published: its buffers are only reused to build a new frame after the JavaFX thread has stopped showing it.
+ */
+public class Frame {
+
+	/** Timeseries from the bottom of the stack to its top */
+	protected Timeseries[] timeseries;
+	public Timeseries[] getTimeseries() {
+		return timeseries;
+	}
+
+	/** Vertices of the timeseries from the bottom of the stack to its top */
+	protected VertexBuffer[] stack;
+	public VertexBuffer[] getStack() {
+		return stack;
+	}
+
+	/** Vertices of the timeseries */
+	protected Map<Timeseries, VertexBuffer> vertices;
+	public Map<Timeseries, VertexBuffer> getVertices() {
+		return vertices;
+	}
+
+	/** Outline of the whole stack, filled with the shading in the polygon render mode */
+	protected VertexBuffer stackOutline;
+	public VertexBuffer getStackOutline() {
+		return stackOutline;
+	}
+
+	/** Alpha values for the SlickGraph shading, one per column */
+	protected double[] slgAlphas;
+	public double[] getSlgAlphas() {
+		return slgAlphas;
+	}
+
+	/** Sum of the smoothed histograms of the timeseries, for each pixel including the ones to trim */
+	protected double[] pixelTotals;
+	public double[] getPixelTotals() {
+		return pixelTotals;
+	}
+
+	/** Sum of the histograms of the timeseries, one per column */
+	protected double[] columnCounts;
+	public double[] getColumnCounts() {
+		return columnCounts;
+	}
+
+	/** Number of pixels trimmed from left and right sides */
+	protected int pixelsToTrim;
+	public int getPixelsToTrim() {
+		return pixelsToTrim;
+	}
+
+	/**
+	 * Constructor that allocates the buffers of a frame, reusing the ones of a frame no longer shown
+	 *
+	 * @param recycled Frame no longer shown, null if none
+	 * @param timeseries Timeseries from the bottom of the stack to its top
+	 * @param nbPixels Number of pixels including the ones to trim
+	 * @param pixelsToTrim Number of pixels trimmed from left and right sides
+	 */
+	protected Frame(Frame recycled, Timeseries[] timeseries, int nbPixels, int pixelsToTrim) {
+		this.timeseries = timeseries;
+		this.pixelsToTrim = pixelsToTrim;
+		int nbColumns = Math.max(0, nbPixels - 2 * pixelsToTrim);
+
+		Map<Timeseries, VertexBuffer> vertices = new HashMap<Timeseries, VertexBuffer>();
+		stack = new VertexBuffer[timeseries.length];
+		for (int i = 0; i < stack.length; i++) {
+			stack[i] = recycled != null && i < recycled.stack.length ? recycled.stack[i] : new VertexBuffer(nbColumns);
+			stack[i].resize(nbColumns);
+			vertices.put(timeseries[i], stack[i]);
+		}
+		this.vertices = Collections.unmodifiableMap(vertices);
+
+		stackOutline = recycled != null ? recycled.stackOutline : new VertexBuffer(nbColumns);
+		stackOutline.resize(nbColumns);
+		slgAlphas = recycled != null && recycled.slgAlphas.length == nbColumns ? recycled.slgAlphas : new double[nbColumns];
+		pixelTotals = recycled != null && recycled.pixelTotals.length == nbPixels ? recycled.pixelTotals : new double[nbPixels];
+		columnCounts = recycled != null && recycled.columnCounts.length == nbColumns ? recycled.columnCounts : new double[nbColumns];
+	}
+
+}
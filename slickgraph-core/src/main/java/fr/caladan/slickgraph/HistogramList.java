@@ -0,0 +1,54 @@
+package fr.caladan.slickgraph;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Histogram values stored in a primitive array, seen as a read-only list.
+ * Values are only boxed when read through the list, the smoothing reading the array directly.
+ */
+public class HistogramList extends AbstractList<Double> implements RandomAccess {
+
+	/** Values of the histogram, not modified once the list is built */
+	protected final double[] values;
+
+	/**
+	 * Public constructor that wraps an array without copying it
+	 *
+	 * @param values Values of the histogram, not to be modified afterwards
+	 */
+	public HistogramList(double[] values) {
+		this.values = values;
+	}
+
+	@Override
+	public Double get(int index) {
+		return values[index];
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * Return the values of a histogram as an array, shared with the histogram when it is stored in one
+	 *
+	 * @param histogram Histogram
+	 * @return Values of the histogram, not to be modified
+	 */
+	public static double[] values(List<Double> histogram) {
+		if (histogram instanceof HistogramList) {
+			return ((HistogramList) histogram).values;
+		}
+
+		double[] values = new double[histogram.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = histogram.get(i);
+		}
+
+		return values;
+	}
+
+}
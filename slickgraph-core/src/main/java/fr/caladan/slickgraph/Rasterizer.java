@@ -0,0 +1,162 @@
+package fr.caladan.slickgraph;
+
+import java.util.Arrays;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws the graph in an ARGB pixel buffer, uploaded to the canvas with a single call.
+ * The cost depends on the number of pixels instead of the number of canvas commands.
+ */
+public class Rasterizer {
+
+	/** Pixels, row by row, reused from one frame to the next */
+	protected int[] pixels;
+
+	/** Width of the buffer, in pixels */
+	protected int width;
+	public int getWidth() {
+		return width;
+	}
+
+	/** Height of the buffer, in pixels */
+	protected int height;
+	public int getHeight() {
+		return height;
+	}
+
+	/** Image the pixels are uploaded to, allocated on first draw */
+	protected WritableImage image;
+
+	/** Public default constructor - initializes an empty buffer */
+	public Rasterizer() {
+		pixels = new int[0];
+		width = 0;
+		height = 0;
+	}
+
+	/**
+	 * Set the size of the buffer, reallocating it only if the size changed
+	 *
+	 * @param width Width, in pixels
+	 * @param height Height, in pixels
+	 */
+	public void resize(int width, int height) {
+		if (width == this.width && height == this.height) {
+			return;
+		}
+
+		this.width = width;
+		this.height = height;
+		pixels = new int[width * height];
+		image = null;
+	}
+
+	/**
+	 * Fill the whole buffer
+	 *
+	 * @param argb Color
+	 */
+	public void clear(int argb) {
+		Arrays.fill(pixels, argb);
+	}
+
+	/**
+	 * Fill a column between two vertical positions, blending the color if it is translucent
+	 *
+	 * @param x Horizontal position of the column
+	 * @param top Vertical position of the top
+	 * @param bottom Vertical position of the bottom
+	 * @param argb Color
+	 */
+	public void fillColumn(double x, double top, double bottom, int argb) {
+		int column = (int) Math.round(x);
+		if (column < 0 || column >= width) {
+			return;
+		}
+
+		int from = Math.max(0, (int) Math.round(top));
+		int to = Math.min(height, (int) Math.round(bottom));
+		for (int row = from; row < to; row++) {
+			plot(row * width + column, argb);
+		}
+	}
+
+	/**
+	 * Draw a line one pixel wide
+	 *
+	 * @param x0 Horizontal position of the start
+	 * @param y0 Vertical position of the start
+	 * @param x1 Horizontal position of the end
+	 * @param y1 Vertical position of the end
+	 * @param argb Color
+	 */
+	public void drawLine(double x0, double y0, double x1, double y1, int argb) {
+		int nbSteps = (int) Math.ceil(Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0)));
+		for (int s = 0; s <= nbSteps; s++) {
+			double t = nbSteps == 0 ? 0. : (double) s / nbSteps;
+			int column = (int) Math.round(x0 + t * (x1 - x0));
+			int row = (int) Math.round(y0 + t * (y1 - y0));
+			if (column >= 0 && column < width && row >= 0 && row < height) {
+				plot(row * width + column, argb);
+			}
+		}
+	}
+
+	/**
+	 * Upload the pixels and draw them on a canvas
+	 *
+	 * @param gc Graphics context of the canvas, whose transform maps the buffer pixels to the canvas
+	 */
+	public void draw(GraphicsContext gc) {
+		if (width == 0 || height == 0) {
+			return;
+		}
+		if (image == null) {
+			image = new WritableImage(width, height);
+		}
+
+		image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+		gc.drawImage(image, 0, 0);
+	}
+
+	/**
+	 * Set a pixel, blending the color over the current one if it is translucent
+	 *
+	 * @param index Index of the pixel
+	 * @param argb Color
+	 */
+	protected void plot(int index, int argb) {
+		int alpha = argb >>> 24;
+		if (alpha == 0xff) {
+			pixels[index] = argb;
+			return;
+		}
+
+		int dst = pixels[index];
+		int r = blend((argb >> 16) & 0xff, (dst >> 16) & 0xff, alpha);
+		int g = blend((argb >> 8) & 0xff, (dst >> 8) & 0xff, alpha);
+		int b = blend(argb & 0xff, dst & 0xff, alpha);
+		int a = alpha + (dst >>> 24) * (255 - alpha) / 255;
+		pixels[index] = (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	protected static int blend(int src, int dst, int alpha) {
+		return (src * alpha + dst * (255 - alpha) + 127) / 255;
+	}
+
+	/**
+	 * @param color Color
+	 * @return Color as a non premultiplied ARGB integer
+	 */
+	public static int toArgb(Color color) {
+		return ((int) Math.round(color.getOpacity() * 255) << 24) |
+				((int) Math.round(color.getRed() * 255) << 16) |
+				((int) Math.round(color.getGreen() * 255) << 8) |
+				(int) Math.round(color.getBlue() * 255);
+	}
+
+}
@@ -0,0 +1,15 @@
+package fr.caladan.slickgraph;
+
+/** Ways of drawing the graph on the canvas */
+public enum RenderMode {
+
+	/** One canvas line per pixel column and per curve segment */
+	LINES,
+
+	/** Columns, shading and curves rasterized in a pixel buffer, drawn on the canvas at once */
+	RASTER,
+
+	/** One filled polygon per timeseries and one polyline per curve */
+	POLYGONS,
+
+}
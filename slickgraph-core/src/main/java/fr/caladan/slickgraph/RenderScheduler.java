@@ -0,0 +1,224 @@
+package fr.caladan.slickgraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+/**
+ * Rendering loop shared by all the graphs.
+ * It only ticks while a graph shown on screen needs to be redrawn, and draws as many graphs per frame as the frame budget allows.
+ * Graphs are registered weakly, so that a graph no longer referenced is dropped.
+ */
+public class RenderScheduler {
+
+	/** Time spent drawing graphs in a frame after which the remaining ones wait for the next frame, in nanoseconds */
+	protected static final long FRAME_BUDGET = 8_000_000L;
+
+	/** Scheduler shared by all the graphs */
+	protected static RenderScheduler shared;
+
+	/** Registered graphs */
+	protected Map<SlickGraph, Boolean> graphs;
+
+	/** Timer drawing the graphs, running only while a graph shown needs to be redrawn */
+	protected AnimationTimer timer;
+
+	/** Indicates whether the timer is running or about to start */
+	protected AtomicBoolean running;
+
+	/** Hidden nodes needing to be redrawn, whose visibility is watched to wake the scheduler up once they may be shown */
+	protected Set<Node> watched;
+
+	/** Index of the graph to draw first in the next frame, so that the graphs left over by the budget go first */
+	protected int next;
+
+	/** @return Scheduler shared by all the graphs */
+	public static synchronized RenderScheduler getShared() {
+		if (shared == null) {
+			shared = new RenderScheduler();
+		}
+
+		return shared;
+	}
+
+	/** Public default constructor - initializes a stopped scheduler */
+	public RenderScheduler() {
+		graphs = Collections.synchronizedMap(new WeakHashMap<SlickGraph, Boolean>());
+		running = new AtomicBoolean(false);
+		watched = Collections.newSetFromMap(new WeakHashMap<Node, Boolean>());
+		next = 0;
+		timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				tick();
+			}
+		};
+	}
+
+	/**
+	 * Register a graph, drawn when it needs to be redrawn
+	 *
+	 * @param slickGraph Graph to register
+	 */
+	public void register(SlickGraph slickGraph) {
+		graphs.put(slickGraph, Boolean.TRUE);
+		wake();
+	}
+
+	/**
+	 * Unregister a graph
+	 *
+	 * @param slickGraph Graph to unregister
+	 */
+	public void unregister(SlickGraph slickGraph) {
+		graphs.remove(slickGraph);
+	}
+
+	/** Start the timer if it is stopped, to be called once a graph needs to be redrawn. Can be called from any thread */
+	public void wake() {
+		if (!running.compareAndSet(false, true)) {
+			return;
+		}
+
+		if (Platform.isFxApplicationThread()) {
+			timer.start();
+		} else {
+			Platform.runLater(timer::start);
+		}
+	}
+
+	/** Draw the graphs shown that need to be redrawn, within the frame budget, and stop once there is none */
+	protected void tick() {
+		List<SlickGraph> snapshot;
+		synchronized (graphs) {
+			snapshot = new ArrayList<SlickGraph>(graphs.keySet());
+		}
+
+		long start = System.nanoTime();
+		int count = snapshot.size();
+		boolean pending = false;
+		for (int i = 0; i < count; i++) {
+			SlickGraph slickGraph = snapshot.get((next + i) % count);
+			if (!slickGraph.isDirty()) {
+				continue;
+			}
+			if (!isShowing(slickGraph)) {
+				continue;
+			}
+
+			// the graphs left over are drawn first in the next frame
+			if (System.nanoTime() - start > FRAME_BUDGET) {
+				next = (next + i) % count;
+				return;
+			}
+			slickGraph.renderIfNeeded();
+			pending |= slickGraph.isDirty();
+		}
+		next = 0;
+
+		if (!pending) {
+			stop(snapshot);
+		}
+	}
+
+	/**
+	 * Stop the timer, unless a graph needs to be redrawn again
+	 *
+	 * @param snapshot Registered graphs
+	 */
+	protected void stop(List<SlickGraph> snapshot) {
+		timer.stop();
+		running.set(false);
+
+		// a graph may have become dirty after it was checked, without starting the timer
+		for (SlickGraph slickGraph : snapshot) {
+			if (slickGraph.isDirty() && isShowing(slickGraph)) {
+				wake();
+				return;
+			}
+		}
+
+		// the graphs hidden, e.g. by an ancestor, wake the scheduler up once they may be shown instead of being checked every frame
+		for (SlickGraph slickGraph : snapshot) {
+			if (slickGraph.isDirty()) {
+				watchUntilShown(slickGraph);
+			}
+		}
+	}
+
+	/**
+	 * Wake the scheduler up once a hidden node may be shown:
+	 * when the visibility or the parent of the node or of one of its ancestors changes, or when its scene, window or window visibility changes
+	 *
+	 * @param node Hidden node
+	 */
+	protected void watchUntilShown(Node node) {
+		if (!watched.add(node)) {
+			return;
+		}
+
+		List<ObservableValue<?>> observables = new ArrayList<ObservableValue<?>>();
+		for (Node n = node; n != null; n = n.getParent()) {
+			observables.add(n.visibleProperty());
+			observables.add(n.parentProperty());
+		}
+		observables.add(node.sceneProperty());
+		Scene scene = node.getScene();
+		if (scene != null) {
+			observables.add(scene.windowProperty());
+			if (scene.getWindow() != null) {
+				observables.add(scene.getWindow().showingProperty());
+			}
+		}
+
+		InvalidationListener listener = new InvalidationListener() {
+			@Override
+			public void invalidated(Observable observable) {
+				observables.forEach(o -> o.removeListener(this));
+				watched.remove(node);
+				wake();
+			}
+		};
+		for (ObservableValue<?> observable : observables) {
+			observable.addListener(listener);
+			// an invalidation is only notified once the value has been read since the previous one
+			observable.getValue();
+		}
+	}
+
+	/**
+	 * @param node Node
+	 * @return True if the node is in a window shown and neither it nor its ancestors are hidden
+	 */
+	protected static boolean isShowing(Node node) {
+		if (node.getScene() == null) {
+			return false;
+		}
+		Window window = node.getScene().getWindow();
+		if (window == null || !window.isShowing()) {
+			return false;
+		}
+
+		for (Node n = node; n != null; n = n.getParent()) {
+			if (!n.isVisible()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+}
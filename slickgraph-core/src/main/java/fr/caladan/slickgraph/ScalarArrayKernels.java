@@ -0,0 +1,45 @@
+package fr.caladan.slickgraph;
+
+/** Inner loops of the binning and of the smoothing, one value at a time */
+public class ScalarArrayKernels extends ArrayKernels {
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.ArrayKernels#differences(long[], double, double, double[])
+	 */
+	@Override
+	public void differences(long[] indices, double duration, double nbTimeSlices, double[] histogram) {
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = (indices[i + 1] - indices[i]) / duration * nbTimeSlices;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.ArrayKernels#convolve(double[], double[], double[], int, int)
+	 */
+	@Override
+	public void convolve(double[] histogram, double[] kernel, double[] smoothed, int from, int to) {
+		int radius = kernel.length / 2;
+		for (int i = from; i < to; i++) {
+			smoothed[i] = convolve(histogram, kernel, i, radius);
+		}
+	}
+
+	/**
+	 * @param histogram Histogram values
+	 * @param kernel Kernel values
+	 * @param i Index of the value to compute
+	 * @param radius Half of the kernel length
+	 * @return Smoothed value at the index
+	 */
+	protected static double convolve(double[] histogram, double[] kernel, int i, int radius) {
+		double value = 0.;
+		int first = Math.max(0, radius - i);
+		int last = Math.min(kernel.length, histogram.length - i + radius);
+		for (int k = first; k < last; k++) {
+			value += histogram[i + k - radius] * kernel[k];
+		}
+
+		return value;
+	}
+
+}
@@ -4,32 +4,51 @@ import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.HeadlessException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.IntStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import fr.caladan.slickgraph.StatisticKernel.KernelType;
-import javafx.animation.AnimationTimer;
+import fr.caladan.slickgraph.smoothing.DirectSmoothingEngine;
+import fr.caladan.slickgraph.smoothing.ScaleSpace;
+import fr.caladan.slickgraph.smoothing.SmoothingEngine;
+import fr.caladan.slickgraph.smoothing.TruncatedSmoothingEngine;
+import javafx.animation.PauseTransition;
 import javafx.beans.InvalidationListener;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ListProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleListProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.event.EventHandler;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Group;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.InputEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.ImagePattern;
 import javafx.stage.Screen;
+import javafx.stage.Window;
+import javafx.util.Duration;
 
 /**
  * Slick Graph is a binning and smoothing technique for time series visualization.
@@ -54,27 +73,26 @@ public class SlickGraph extends Group {
 		return heightProperty().get();
 	}
 
+	/** Canvas drawn over the graph for the highlight of the selected timeseries, so that the graph is not redrawn when the selection changes */
+	protected Canvas overlay;
+
 	/** Timeseries to render */
 	protected ListProperty<Timeseries> timeseries;
 	public ListProperty<Timeseries> getTimeseries() {
 		return timeseries;
 	}
 	public void setTimeseries(List<Timeseries> timeseries) {
-		if (!verticesReady.get()) {
-			return;
-		}
-
-		this.timeseries.forEach(ts -> ts.selectedProperty().removeListener(propertiesListener));
+		this.timeseries.forEach(ts -> ts.selectedProperty().removeListener(selectionListener));
 		this.timeseries.clear();
 		this.timeseries.addAll(timeseries);
-		this.timeseries.forEach(ts -> ts.selectedProperty().addListener(propertiesListener));
+		this.timeseries.forEach(ts -> ts.selectedProperty().addListener(selectionListener));
 
 		if (timeseries.isEmpty()) {
 			start = -1;
 			end = -1;
 		} else {
-			start = timeseries.get(0).getData().get(0);
-			end = timeseries.get(0).getData().get(timeseries.get(0).getData().size() - 1);
+			start = timeseries.get(0).getTimestamps().first();
+			end = timeseries.get(0).getTimestamps().last();
 		}
 	}
 
@@ -102,23 +120,143 @@ public class SlickGraph extends Group {
 		return kernelBandWidthProperty.get();
 	}
 
+	/** Engine computing the convolution of the histograms with the kernel */
+	protected SimpleObjectProperty<SmoothingEngine> smoothingEngineProperty;
+	public SimpleObjectProperty<SmoothingEngine> smoothingEngineProperty() {
+		return smoothingEngineProperty;
+	}
+	public SmoothingEngine getSmoothingEngine() {
+		return smoothingEngineProperty.get();
+	}
+	public void setSmoothingEngine(SmoothingEngine smoothingEngine) {
+		smoothingEngineProperty.set(smoothingEngine);
+	}
+
+	/** Indicates whether the user is interacting with the graph, the frames requested being then approximated to keep up */
+	protected SimpleBooleanProperty interactingProperty;
+	public SimpleBooleanProperty interactingProperty() {
+		return interactingProperty;
+	}
+	public boolean isInteracting() {
+		return interactingProperty.get();
+	}
+	public void setInteracting(boolean interacting) {
+		interactingProperty.set(interacting);
+	}
+
+	/** Engine approximating the convolution while the user is interacting with the graph */
+	protected SimpleObjectProperty<SmoothingEngine> previewSmoothingEngineProperty;
+	public SimpleObjectProperty<SmoothingEngine> previewSmoothingEngineProperty() {
+		return previewSmoothingEngineProperty;
+	}
+	public SmoothingEngine getPreviewSmoothingEngine() {
+		return previewSmoothingEngineProperty.get();
+	}
+	public void setPreviewSmoothingEngine(SmoothingEngine previewSmoothingEngine) {
+		previewSmoothingEngineProperty.set(previewSmoothingEngine);
+	}
+
+	/** Indicates whether the histograms are smoothed in the background for a ladder of bandwidths, so that changing the bandwidth is immediate */
+	protected SimpleBooleanProperty scaleSpaceEnabledProperty;
+	public SimpleBooleanProperty scaleSpaceEnabledProperty() {
+		return scaleSpaceEnabledProperty;
+	}
+	public boolean isScaleSpaceEnabled() {
+		return scaleSpaceEnabledProperty.get();
+	}
+	public void setScaleSpaceEnabled(boolean scaleSpaceEnabled) {
+		scaleSpaceEnabledProperty.set(scaleSpaceEnabled);
+	}
+
+	/** Largest bandwidth of the ladder. The pixels to trim cover it, so that changing the bandwidth does not need a new aggregation */
+	protected SimpleDoubleProperty scaleSpaceMaxBandWidthProperty;
+	public SimpleDoubleProperty scaleSpaceMaxBandWidthProperty() {
+		return scaleSpaceMaxBandWidthProperty;
+	}
+	public double getScaleSpaceMaxBandWidth() {
+		return scaleSpaceMaxBandWidthProperty.get();
+	}
+	public void setScaleSpaceMaxBandWidth(double scaleSpaceMaxBandWidth) {
+		scaleSpaceMaxBandWidthProperty.set(scaleSpaceMaxBandWidth);
+	}
+
+	/** Ratio between two consecutive bandwidths of the ladder */
+	protected static final double SCALE_SPACE_RATIO = 1.25;
+
+	/** Delay after the last bandwidth change before the exact smoothing is computed, in milliseconds */
+	protected static final double BANDWIDTH_SETTLE_DELAY = 200.;
+
+	/** Executor building the scale spaces, shared by all the graphs */
+	protected static ExecutorService scaleSpaceExecutor;
+
+	/** Histograms smoothed for the ladder of bandwidths, null until built */
+	protected volatile ScaleSpace scaleSpace;
+
+	/** Incremented each time the scale space has to be rebuilt, so that the previous build stops */
+	protected AtomicLong scaleSpaceGeneration;
+
+	/** Computes the exact smoothing once the bandwidth stops changing */
+	protected PauseTransition bandWidthSettle;
+
+	/** Delay after the last resize event before the graph is computed for the new size, in milliseconds */
+	protected static final double RESIZE_SETTLE_DELAY = 150.;
+
+	/** Computes the graph for the new size once it stops changing */
+	protected PauseTransition resizeSettle;
+
+	/** Last frame drawn before the resize, stretched over the canvas until the size settles. Null if not resizing */
+	protected Image resizeSnapshot;
+
+	/** Ratio between the physical and the logical pixels of the display, looked up again when the scene, the window or its render scale changes. Null until looked up */
+	protected Point2D displayScale;
+
+	/** Looks the display scale up again and sets the canvas for it, e.g. once the window moved to a screen with another scale */
+	protected InvalidationListener renderScaleListener;
+
 	/** Start timestamp */
 	protected double start;
 
 	/** End timestamp */
 	protected double end;
 
-	/** Histogram computed after aggregation based on the pixels */
+	/** Histogram computed after aggregation based on the pixels, only accessed by the thread computing the frames */
 	protected Map<Timeseries, List<Double>> mapHistograms;
 
-	/** Histogram values after the convolution */
-	protected Map<Timeseries, List<Double>> mapSmoothedHistogram;
+	/** Histograms received since the last frame was computed, waiting to be processed */
+	protected Map<Timeseries, List<Double>> pendingHistograms;
+
+	/** Histogram values after the convolution, kept from one frame to the next and only accessed by the thread computing the frames */
+	protected Map<Timeseries, double[]> mapSmoothedHistogram;
+
+	/** Histogram and parameters each smoothed histogram has been convolved with, absent if it has been interpolated from the scale space */
+	protected Map<Timeseries, SmoothingSource> mapSmoothingSources;
+
+	/** Vertices of the frame shown */
+	protected Map<Timeseries, VertexBuffer> mapVertices;
+
+	/** Executor computing the frames, shared by all the graphs */
+	protected static ExecutorService frameExecutor;
+
+	/** Parameters of the latest frame requested and not computed yet, null if none */
+	protected AtomicReference<FrameRequest> frameRequest;
+
+	/** Indicates whether a task is computing the frames of this graph */
+	protected AtomicBoolean computingFrames;
+
+	/** Latest frame computed, null until the first one */
+	protected AtomicReference<Frame> latestFrame;
 
-	/** Vertices of the histogram */
-	protected List<Vertex> histogramVertices;
+	/** Frame shown, only accessed by the JavaFX thread */
+	protected Frame shownFrame;
 
-	/** Vertices of the graph */
-	protected Map<Timeseries, List<Vertex>> mapVertices;
+	/** Frame no longer shown, whose buffers are reused for the next frame */
+	protected AtomicReference<Frame> recycledFrame;
+
+	/** Indicates whether the scale space has to be rebuilt with the next exact frame */
+	protected AtomicBoolean scaleSpaceDirty;
+
+	/** Timeseries currently selected, null if none */
+	protected Timeseries selectedTimeseries;
 
 	/** Horizontal scale factor */
 	protected SimpleDoubleProperty xScaleProperty;
@@ -189,9 +327,6 @@ public class SlickGraph extends Group {
 		showShadingProperty.set(showShading);
 	}
 
-	/** List of alpha values for the SlickGraph shading */
-	protected List<Double> slgAlphas;
-
 	/** Background color */
 	protected SimpleObjectProperty<Color> backgroundColorProperty;
 	public SimpleObjectProperty<Color> backgroundColorProperty() {
@@ -228,14 +363,41 @@ public class SlickGraph extends Group {
 		showCurveProperty.set(showCurve);
 	}
 
+	/** Way of drawing the graph on the canvas */
+	protected SimpleObjectProperty<RenderMode> renderModeProperty;
+	public SimpleObjectProperty<RenderMode> renderModeProperty() {
+		return renderModeProperty;
+	}
+	public RenderMode getRenderMode() {
+		return renderModeProperty.get();
+	}
+	public void setRenderMode(RenderMode renderMode) {
+		renderModeProperty.set(renderMode);
+	}
+
+	/** Pixel buffer used by the raster render mode */
+	protected Rasterizer rasterizer;
+
+	/** Shading alphas of the columns, stretched over the stack in the polygon render mode */
+	protected WritableImage shadingStrip;
+
+	/** Pixels of the shading strip, reused between frames */
+	protected int[] shadingPixels;
+
+	/** Pattern stretching the shading strip over the canvas, built again only when the strip or the height changes */
+	protected ImagePattern shadingPattern;
+
 	/** Listener of the different properties */
 	protected InvalidationListener propertiesListener;
-	
-	/** Atomic variable to know whether the vertices are ready or not */
-	protected AtomicBoolean verticesReady;
+
+	/** Listener of the selection of the timeseries, only the overlay being redrawn */
+	protected InvalidationListener selectionListener;
 	
 	/** Indicates whether or not the frame needs to be refresh */
 	protected AtomicBoolean needsRefresh;
+
+	/** Indicates whether or not the overlay needs to be refresh */
+	protected AtomicBoolean overlayNeedsRefresh;
 	
 	/** Public default constructor - initializes the properties */
 	public SlickGraph() {
@@ -243,18 +405,42 @@ public class SlickGraph extends Group {
 		
 		canvas = new Canvas();
 		getChildren().add(canvas);
+		overlay = new Canvas();
+		overlay.setMouseTransparent(true);
+		overlay.widthProperty().bind(canvas.widthProperty());
+		overlay.heightProperty().bind(canvas.heightProperty());
+		getChildren().add(overlay);
 		// timeseries = FXCollections.observableArrayList();
 		timeseries = new SimpleListProperty<Timeseries>();
 		kernelBandWidthProperty = new SimpleDoubleProperty(5.0);
 		kernelTypeProperty = new SimpleObjectProperty<KernelType>(KernelType.GAUSSIAN);
+		smoothingEngineProperty = new SimpleObjectProperty<SmoothingEngine>(new DirectSmoothingEngine());
+		interactingProperty = new SimpleBooleanProperty(false);
+		previewSmoothingEngineProperty = new SimpleObjectProperty<SmoothingEngine>(new TruncatedSmoothingEngine());
+		scaleSpaceEnabledProperty = new SimpleBooleanProperty(false);
+		scaleSpaceMaxBandWidthProperty = new SimpleDoubleProperty(30.);
+		scaleSpaceGeneration = new AtomicLong();
+		bandWidthSettle = new PauseTransition(Duration.millis(BANDWIDTH_SETTLE_DELAY));
+		bandWidthSettle.setOnFinished(e -> requestFrame(false));
+		resizeSettle = new PauseTransition(Duration.millis(RESIZE_SETTLE_DELAY));
+		resizeSettle.setOnFinished(e -> {
+			resizeSnapshot = null;
+			handleHiDPI();
+		});
 		// toTrim = 0; // (int) (Math.round(3. * kernelBandWidthProperty.get() / 2.) * 2);
-		pixelsToTrimProperty = new SimpleIntegerProperty((int) (Math.round(3. * kernelBandWidthProperty.get() / 2.) * 2));
+		pixelsToTrimProperty = new SimpleIntegerProperty(computePixelsToTrim());
 		mapHistograms = new HashMap<Timeseries, List<Double>>();
-		mapSmoothedHistogram = new HashMap<Timeseries, List<Double>>();
+		pendingHistograms = new HashMap<Timeseries, List<Double>>();
+		mapSmoothedHistogram = new HashMap<Timeseries, double[]>();
+		mapSmoothingSources = new HashMap<Timeseries, SmoothingSource>();
 		start = -1;
 		end = -1;
-		histogramVertices = new ArrayList<Vertex>();
-		mapVertices = new HashMap<Timeseries, List<Vertex>>();
+		mapVertices = new HashMap<Timeseries, VertexBuffer>();
+		frameRequest = new AtomicReference<FrameRequest>();
+		computingFrames = new AtomicBoolean(false);
+		latestFrame = new AtomicReference<Frame>();
+		recycledFrame = new AtomicReference<Frame>();
+		scaleSpaceDirty = new AtomicBoolean(false);
 		xScaleProperty = new SimpleDoubleProperty(1.);
 		yScaleProperty = new SimpleDoubleProperty(1.);
 		scaledWidthProperty = new SimpleDoubleProperty();
@@ -263,42 +449,77 @@ public class SlickGraph extends Group {
 		getChildren().add(timeCursor);
 		timeCursorVisibleProperty = new SimpleBooleanProperty(true);
 		showShadingProperty = new SimpleBooleanProperty(false);
-		slgAlphas = new ArrayList<Double>();
 		backgroundColorProperty = new SimpleObjectProperty<Color>(Color.WHITE);
 		showCurveProperty = new SimpleBooleanProperty(true);
 		curveColorProperty = new SimpleObjectProperty<Color>(Color.BLACK);
-		verticesReady = new AtomicBoolean(true);
+		renderModeProperty = new SimpleObjectProperty<RenderMode>(RenderMode.LINES);
+		rasterizer = new Rasterizer();
 		needsRefresh = new AtomicBoolean(false);
+		overlayNeedsRefresh = new AtomicBoolean(false);
 
-		canvas.widthProperty().addListener(e -> handleHiDPI());
-		canvas.heightProperty().addListener(e -> handleHiDPI());
+		canvas.widthProperty().addListener((o, previousWidth, width) -> handleResize(previousWidth.doubleValue(), canvas.getHeight()));
+		canvas.heightProperty().addListener((o, previousHeight, height) -> handleResize(canvas.getWidth(), previousHeight.doubleValue()));
+		renderScaleListener = e -> {
+			displayScale = null;
+			handleHiDPI();
+		};
+		ChangeListener<Window> windowListener = (o, previous, window) -> {
+			displayScale = null;
+			observeRenderScale(previous, false);
+			observeRenderScale(window, true);
+		};
+		sceneProperty().addListener((o, previous, scene) -> {
+			if (previous != null) {
+				previous.windowProperty().removeListener(windowListener);
+			}
+			if (scene != null) {
+				scene.windowProperty().addListener(windowListener);
+			}
+			windowListener.changed(null, previous == null ? null : previous.getWindow(), scene == null ? null : scene.getWindow());
+		});
 		timeCursor.getCursorLine().endYProperty().bind(canvas.heightProperty());
 
 		kernelBandWidthProperty.addListener(e -> {
-			pixelsToTrimProperty.set((int) (Math.round(3. * kernelBandWidthProperty.get() / 2.) * 2));
-			computeVertices();
+			pixelsToTrimProperty.set(computePixelsToTrim());
+			if (scaleSpaceEnabledProperty.get()) {
+				// interpolated from the scale space while the bandwidth changes, the exact smoothing being computed once it settles
+				requestFrame(true);
+				bandWidthSettle.playFromStart();
+			} else {
+				requestFrame(false);
+			}
 		});
+		InvalidationListener scaleSpaceListener = e -> {
+			pixelsToTrimProperty.set(computePixelsToTrim());
+			scaleSpaceDirty.set(true);
+			requestFrame(false);
+		};
+		kernelTypeProperty.addListener(scaleSpaceListener);
+		scaleSpaceEnabledProperty.addListener(scaleSpaceListener);
+		scaleSpaceMaxBandWidthProperty.addListener(scaleSpaceListener);
+		smoothingEngineProperty.addListener(scaleSpaceListener);
+		// the scale space is built with the exact engine only
+		previewSmoothingEngineProperty.addListener(e -> requestFrame(false));
 		
 		// mouse event for the time cursor
 		EventHandler<? super InputEvent> mouseEventHandler = e -> {
-			if (!verticesReady.get()) {
+			Frame frame = shownFrame;
+			if (frame == null || frame.getStack().length == 0) {
 				return;
 			}
 
 			double x = Math.max(0, Math.min(canvas.getWidth(), e instanceof MouseEvent ? ((MouseEvent) e).getX() : ((ScrollEvent) e).getX()));
-			double value = mapSmoothedHistogram.values().stream()
-					.mapToDouble(h -> h.get((int) (x * xScaleProperty.get()) + (int) Math.floor(3. * kernelBandWidthProperty.get())) * (end - start) / scaledWidthProperty.get())
-					.sum();
-			timeCursor.setTooltipText(" y = " + value + " ");
-			
-			/* timeCursor.setPosition(
-					x,
-					mapVertices.get(timeseries.get(timeseries.size() - 1)).get(
-							(int) Math.max(0, Math.round((x - 1) * 2. * xScaleProperty.get()) / 2 * 2)
-					).y / yScaleProperty.get()
-			); */
-			
-			needsRefresh.set(true);
+			int pixel = (int) (x * xScaleProperty.get()) + frame.getPixelsToTrim();
+			if (pixel < frame.getPixelTotals().length) {
+				timeCursor.setTooltipText(" y = " + frame.getPixelTotals()[pixel] * (end - start) / scaledWidthProperty.get() + " ");
+			}
+
+			// the cursor is made of nodes over the canvas, moving it does not redraw the graph
+			VertexBuffer vertices = frame.getStack()[frame.getStack().length - 1];
+			if (vertices.getSize() > 0) {
+				int column = (int) Math.max(0, Math.min(vertices.getSize() - 1, Math.round(x * xScaleProperty.get())));
+				timeCursor.setPosition(x, vertices.getTop(column) / yScaleProperty.get());
+			}
 		};
 		addEventHandler(MouseEvent.MOUSE_MOVED, mouseEventHandler);
 		addEventHandler(MouseEvent.MOUSE_DRAGGED, mouseEventHandler);
@@ -307,21 +528,23 @@ public class SlickGraph extends Group {
 		timeCursor.visibleProperty().bind(timeCursorVisibleProperty);
 
 		// bind the properties setting the visualization parameters
-		propertiesListener = e -> needsRefresh.set(true);
+		propertiesListener = e -> requestRender();
+		selectionListener = e -> requestOverlayRender();
 		showShadingProperty.addListener(propertiesListener);
 		showCurveProperty.addListener(propertiesListener);
 		backgroundColorProperty.addListener(propertiesListener);
 		curveColorProperty.addListener(propertiesListener);
-		
-		// launch the rendering loop - 60 fps
-		new AnimationTimer() {
-			@Override
-			public void handle(long now) {
-				if (needsRefresh.getAndSet(false)) {
-					render();
-				}
+		renderModeProperty.addListener(propertiesListener);
+
+		// drawn by the rendering loop shared by all the graphs, as soon as it is shown
+		InvalidationListener showingListener = e -> {
+			if (isDirty()) {
+				RenderScheduler.getShared().wake();
 			}
-		}.start();
+		};
+		sceneProperty().addListener(showingListener);
+		visibleProperty().addListener(showingListener);
+		RenderScheduler.getShared().register(this);
 	}
 
 	/**
@@ -395,13 +618,116 @@ public class SlickGraph extends Group {
 		kernelTypeProperty.set(kernelType);
 	}
 
-	/** Set the scale on the canvas to have a 1:1 pixel mapping */
-	protected void handleHiDPI() {
+	/** @return Number of pixels to trim on each side, covering the radius of the kernel */
+	protected int computePixelsToTrim() {
+		double bandWidth = kernelBandWidthProperty.get();
+		if (scaleSpaceEnabledProperty.get()) {
+			bandWidth = Math.max(bandWidth, scaleSpaceMaxBandWidthProperty.get());
+		}
+
+		return (int) (Math.round(StatisticKernel.radius(bandWidth, kernelTypeProperty.get()) / 2.) * 2);
+	}
+
+	/**
+	 * Stretch the last frame over the canvas while it is being resized, the graph being computed for the new size once it stops changing
+	 *
+	 * @param previousWidth Width of the canvas before the resize event
+	 * @param previousHeight Height of the canvas before the resize event
+	 */
+	protected void handleResize(double previousWidth, double previousHeight) {
+		// nothing drawn yet, nothing to stretch
+		if (shownFrame == null || previousWidth <= 0. || previousHeight <= 0. || getScene() == null) {
+			resizeSettle.stop();
+			resizeSnapshot = null;
+			handleHiDPI();
+			return;
+		}
+
+		if (resizeSnapshot == null) {
+			resizeSnapshot = snapshotCanvas(previousWidth, previousHeight);
+		}
+
+		double width = canvas.getWidth() * xScaleProperty.get();
+		double height = canvas.getHeight() * yScaleProperty.get();
+		canvas.getGraphicsContext2D().drawImage(resizeSnapshot, 0, 0, width, height);
+		overlay.getGraphicsContext2D().clearRect(0, 0, width, height);
+
+		resizeSettle.playFromStart();
+	}
+
+	/**
+	 * Take a snapshot of the top left area of the canvas
+	 *
+	 * @param width Width of the area, in logical pixels
+	 * @param height Height of the area, in logical pixels
+	 * @return Snapshot of the area
+	 */
+	protected Image snapshotCanvas(double width, double height) {
+		SnapshotParameters parameters = new SnapshotParameters();
+		parameters.setViewport(new Rectangle2D(0, 0, width, height));
+		return canvas.snapshot(parameters, null);
+	}
+
+	/**
+	 * Observe or stop observing the render scale of a window, so that the graph follows the window to a screen with another scale.
+	 * Nothing is observed before JavaFX 9, where windows have no render scale.
+	 *
+	 * @param window Window, may be null
+	 * @param observe True to observe the render scale, false to stop observing it
+	 */
+	protected void observeRenderScale(Window window, boolean observe) {
+		if (window == null) {
+			return;
+		}
+
+		for (String name : new String[] { "renderScaleXProperty", "renderScaleYProperty" }) {
+			ReadOnlyDoubleProperty renderScale = getRenderScale(window, name);
+			if (renderScale == null) {
+				return;
+			}
+
+			if (observe) {
+				renderScale.addListener(renderScaleListener);
+			} else {
+				renderScale.removeListener(renderScaleListener);
+			}
+		}
+	}
+
+	/**
+	 * Return a render scale property of a window, looked up by name as it only exists from JavaFX 9
+	 *
+	 * @param window Window
+	 * @param name Name of the property method
+	 * @return Render scale property, null if it does not exist
+	 */
+	protected static ReadOnlyDoubleProperty getRenderScale(Window window, String name) {
+		try {
+			return (ReadOnlyDoubleProperty) Window.class.getMethod(name).invoke(window);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/** @return Ratio between the physical and the logical pixels of the display, null if there is no display */
+	protected Point2D getDisplayScale() {
+		if (displayScale != null) {
+			return displayScale;
+		}
+
+		// the render scale of the window is the one of the screen it is on
+		Window window = getScene() == null ? null : getScene().getWindow();
+		ReadOnlyDoubleProperty renderScaleX = window == null ? null : getRenderScale(window, "renderScaleXProperty");
+		if (renderScaleX != null) {
+			displayScale = new Point2D(renderScaleX.get(), getRenderScale(window, "renderScaleYProperty").get());
+			return displayScale;
+		}
+
 		GraphicsDevice devices[] = null;
 		try {
 			devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
 		} catch (HeadlessException e) {
-			return;
+			return null;
 		}
 
 		GraphicsDevice currentDevice = devices.length > 1 ? devices[1] : devices[0];
@@ -410,147 +736,335 @@ public class SlickGraph extends Group {
 		double screenWidth = Screen.getPrimary().getVisualBounds().getWidth();
 		double screenHeight = Screen.getPrimary().getVisualBounds().getHeight();
 
-		double xScale = nativeWidth / screenWidth;
-		double yScale = nativeHeight / screenHeight;
+		displayScale = new Point2D(nativeWidth / screenWidth, nativeHeight / screenHeight);
+		return displayScale;
+	}
+
+	/** Set the scale on the canvas to have a 1:1 pixel mapping */
+	protected void handleHiDPI() {
+		Point2D scale = getDisplayScale();
+		if (scale == null) {
+			return;
+		}
+
+		double xScale = scale.getX();
+		double yScale = scale.getY();
 
 		scaledWidthProperty.set(canvas.getWidth() * xScale);
 		scaledHeightProperty.set(canvas.getHeight() * yScale);
 
-		// back to scale 1:1
-		canvas.getGraphicsContext2D().scale(xScaleProperty.get(), yScaleProperty.get());
-
-		// set the new scale
-		canvas.getGraphicsContext2D().scale(1. / xScale, 1. / yScale);
+		// back to scale 1:1 and set the new scale
+		for (Canvas c : new Canvas[] { canvas, overlay }) {
+			c.getGraphicsContext2D().scale(xScaleProperty.get(), yScaleProperty.get());
+			c.getGraphicsContext2D().scale(1. / xScale, 1. / yScale);
+		}
 
 		xScaleProperty.set(xScale);
 		yScaleProperty.set(yScale);
 
 		// update the view
-		computeVertices();
+		requestFrame(false);
 	}
 
 	/**
-	 * Convolve the histogram with a statistic kernel for a given timeseries
+	 * Smooth the histogram of a timeseries of the stack and accumulate it in the frame, in a single sweep over its pixels:
+	 * the totals of the pixels, which are also the top of the stack so far, and the counts of the columns for the shading
 	 *
-	 * @param timeseries Timeseries whose histogram is to convolve
+	 * @param frame Frame being computed
+	 * @param i Index of the timeseries in the stack
+	 * @param request Parameters of the frame
+	 * @param scaleSpace Scale space to interpolate the smoothing from, null to convolve the histogram
 	 */
-	protected void computeConvolution(Timeseries timeseries) {
-		List<Double> histogram = mapHistograms.get(timeseries);
-		List<Double> smoothedHistogram = new ArrayList<Double>();
-		histogram.forEach(i -> smoothedHistogram.add(0.));
-
-		// compute the convolution of the time serie width the kernel
-		List<Double> kernelValues = StatisticKernel.kernelValues(kernelBandWidthProperty.get(), kernelTypeProperty.get());
-		for (int i = 2; i < histogram.size(); i++) {
-			for (int k = 0; k < kernelValues.size(); k++) {
-				int j = (int) Math.ceil(i + k - kernelValues.size() / 2.);
-				if (j < 0 || j > histogram.size() - 1) {
-					continue;
-				}
-				smoothedHistogram.set(i, smoothedHistogram.get(i) + histogram.get(j) * kernelValues.get(k));
+	protected void computeLayer(Frame frame, int i, FrameRequest request, ScaleSpace scaleSpace) {
+		Timeseries timeseries = frame.timeseries[i];
+		double[] histogram = HistogramList.values(mapHistograms.get(timeseries));
+		double[] smoothedHistogram = mapSmoothedHistogram.get(timeseries);
+		if (smoothedHistogram == null || smoothedHistogram.length != histogram.length) {
+			smoothedHistogram = new double[histogram.length];
+			mapSmoothedHistogram.put(timeseries, smoothedHistogram);
+			mapSmoothingSources.remove(timeseries);
+		}
+
+		if (scaleSpace != null) {
+			scaleSpace.interpolate(timeseries, request.bandWidth, smoothedHistogram);
+			mapSmoothingSources.remove(timeseries);
+		} else {
+			int from = getFirstPixelToSmooth(timeseries, histogram, request);
+			if (from < histogram.length) {
+				request.engine.smooth(histogram, request.bandWidth, request.kernelType, smoothedHistogram, from);
 			}
+			mapSmoothingSources.put(timeseries, new SmoothingSource(histogram, request));
 		}
 
-		mapSmoothedHistogram.put(timeseries, smoothedHistogram);
+		double[] totals = frame.pixelTotals;
+		double[] counts = frame.columnCounts;
+		VertexBuffer vertices = frame.stack[i];
+		int toTrim = frame.pixelsToTrim;
+		int nbColumns = counts.length;
+		int nbPixels = Math.min(totals.length, histogram.length);
+		for (int j = 0; j < nbPixels; j++) {
+			totals[j] += smoothedHistogram[j];
+
+			// the top of the stack is kept unscaled until the highest pixel is known
+			int column = j - toTrim;
+			if (column >= 0 && column < nbColumns) {
+				vertices.set(column, column, totals[j], 0.);
+				counts[column] += histogram[j];
+			}
+		}
 	}
 
-	/** Compute the vertices for the layered rendering */
-	protected void computeStackedVertices() {
-		mapVertices.clear();
-
-		double max = IntStream.range(0, mapSmoothedHistogram.get(timeseries.get(0)).size())
-		 		.mapToDouble(i -> mapSmoothedHistogram.values().stream().mapToDouble(h -> h.get(i)).sum())
-		 		.summaryStatistics()
-		 		.getMax();
-
-		// put the first time series at the bottom
-		Timeseries ts = timeseries.get(0);
-		List<Double> smoothedHistogram = mapSmoothedHistogram.get(ts);
-		List<Vertex> vertices = new ArrayList<Vertex>();
-		for (int i = 0; i < smoothedHistogram.size(); i++) {
-			vertices.add(new Vertex(i, (1. - smoothedHistogram.get(i) / max * .8) * scaledHeightProperty.get(), ts.getColor()));
-			vertices.add(new Vertex(i, scaledHeightProperty.get()));
+	/**
+	 * Return the first pixel whose smoothed value has to be computed again, the previous values being kept before it.
+	 * When events are appended, only the bins on the right edge of the histogram change, so only the last kernel width of pixels is convolved again.
+	 *
+	 * @param timeseries Timeseries
+	 * @param histogram Histogram of the timeseries
+	 * @param request Parameters of the frame
+	 * @return Index of the first pixel to smooth, the size of the histogram if the smoothed histogram is up to date
+	 */
+	protected int getFirstPixelToSmooth(Timeseries timeseries, double[] histogram, FrameRequest request) {
+		SmoothingSource source = mapSmoothingSources.get(timeseries);
+		if (source == null || !source.isSmoothedWith(request) || source.histogram.length != histogram.length) {
+			return 0;
+		}
+		if (source.histogram == histogram) {
+			return histogram.length;
 		}
-		mapVertices.put(ts, vertices);
-
-		// stack the other time series
-		for (int i = 1; i < timeseries.size(); i++) {
-			ts = timeseries.get(i);
-			smoothedHistogram = mapSmoothedHistogram.get(ts);
-			vertices = new ArrayList<Vertex>();
-			List<Vertex> aboveVertices = mapVertices.get(timeseries.get(i - 1));
-			for (int j = 0; j < smoothedHistogram.size(); j++) {
-				vertices.add(new Vertex(aboveVertices.get(2 * j).x, aboveVertices.get(2 * j).y - smoothedHistogram.get(j) / max * .8 * scaledHeightProperty.get(), ts.getColor()));
-				vertices.add(new Vertex(aboveVertices.get(2 * j).x, aboveVertices.get(2 * j).y, ts.getColor()));
-			}
 
-			mapVertices.put(ts, vertices);
+		int first = 0;
+		while (first < histogram.length && source.histogram[first] == histogram[first]) {
+			first++;
+		}
+		if (first == histogram.length) {
+			return first;
 		}
 
-		// trim 3 times the kernel bandwidth at each side
-		int toTrim = pixelsToTrimProperty.get();
-		mapVertices.forEach((t, vt) -> {
-			vt = vt.subList(toTrim * 2, vt.size() - toTrim * 2);
-			vt.forEach(v -> v.x -= toTrim);
-			mapVertices.put(t, vt);
-		});
+		// a bin reaches the pixels up to the kernel radius on its left
+		return Math.max(0, first - StatisticKernel.kernelValues(request.bandWidth, request.kernelType).length / 2);
 	}
 
-	/** Compute the alpha values used for the SlickGraph shading */
-	protected void computeSlgAlphas() {
-		slgAlphas.clear();
+	/**
+	 * Scale the stack to the canvas, build its outlines and compute the alpha values used for the SlickGraph shading, in a single sweep over the columns
+	 *
+	 * @param frame Frame whose layers are computed
+	 * @param height Height (in physical pixels) of the canvas
+	 */
+	protected void computeStack(Frame frame, double height) {
+		double[] totals = frame.pixelTotals;
+		double max = 0.;
+		for (int j = 0; j < totals.length; j++) {
+			max = Math.max(max, totals[j]);
+		}
 
-		IntStream.range(0, mapHistograms.get(timeseries.get(0)).size()).forEach(i -> {
-			double vh = mapHistograms.values().stream()
-					.mapToDouble(h -> h.get(i))
-					.sum();
-			double vsh = mapSmoothedHistogram.values().stream()
-					.mapToDouble(sh -> sh.get(i))
-					.sum();
+		double scale = max > 0. ? .8 * height / max : 0.;
+		double[] counts = frame.columnCounts;
+		int toTrim = frame.pixelsToTrim;
+		for (int j = 0; j < counts.length; j++) {
+			// put the first time series at the bottom and stack the other ones
+			double bottom = height;
+			for (VertexBuffer vertices : frame.stack) {
+				double top = height - vertices.getTop(j) * scale;
+				vertices.set(j, j, top, bottom);
+				bottom = top;
+			}
 
-			slgAlphas.add(vh == 0 ? 0. : 1. / (1. + vsh / vh));
-		});
+			// the whole stack, from the top of the last timeseries to the bottom of the canvas
+			frame.stackOutline.set(j, j, bottom, height);
+
+			double vsh = totals[j + toTrim];
+			frame.slgAlphas[j] = counts[j] == 0 ? 0. : 1. / (1. + vsh / counts[j]);
+		}
 
-		int toTrim = pixelsToTrimProperty.get();
-		slgAlphas = slgAlphas.subList(toTrim, slgAlphas.size() - toTrim);
+		for (VertexBuffer vertices : frame.stack) {
+			vertices.buildOutline();
+		}
+		frame.stackOutline.buildOutline();
 	}
 
 	/**
-	 * Update the vertices with the new histograms
+	 * Update the vertices with the new histograms.
+	 * The histograms are processed with the next frame computed, so that no update is lost.
+	 * To be called on the JavaFX thread.
 	 * 
 	 * @param histograms Histograms resulting from the new aggregation
 	 */
 	public void update(Map<Timeseries, List<Double>> histograms) {
-		if (!verticesReady.get()) {
+		synchronized (pendingHistograms) {
+			pendingHistograms.putAll(histograms);
+		}
+		scaleSpaceDirty.set(true);
+
+		requestFrame(false);
+	}
+
+	/**
+	 * Update the vertices with histograms whose right edge only changed, once events have been appended to the timeseries.
+	 * Only the last kernel width of pixels is convolved again for them.
+	 * The scale space is not rebuilt for each batch of events: as it no longer matches the histograms,
+	 * the bandwidth changes are convolved directly until the next update of the time window.
+	 * To be called on the JavaFX thread.
+	 *
+	 * @param histograms Histograms that changed
+	 */
+	public void updateTail(Map<Timeseries, List<Double>> histograms) {
+		if (histograms.isEmpty()) {
 			return;
 		}
-		
-		verticesReady.set(false);
 
-		mapHistograms.putAll(histograms);
-		computeVertices();
+		synchronized (pendingHistograms) {
+			pendingHistograms.putAll(histograms);
+		}
 
-		verticesReady.set(true);
+		requestFrame(false);
 	}
 
-	/** Compute the vertices of the graph */
-	protected void computeVertices() {
-		// nothing to do if not shown yet or not data
+	/**
+	 * Request a new frame with the current parameters, computed in the background.
+	 * Requests made while a frame is being computed are merged into the next one.
+	 * To be called on the JavaFX thread.
+	 *
+	 * @param interpolate True to interpolate the smoothing from the scale space, if it covers the bandwidth
+	 */
+	protected void requestFrame(boolean interpolate) {
+		// nothing to do if not shown yet
 		if (canvas.getWidth() == 0. || canvas.getHeight() == 0.) {
 			return;
 		}
 
-		// aggregate the time series
-		timeseries.stream().forEach(ts -> {
-			synchronized (ts) {
-				computeConvolution(ts);
+		frameRequest.set(new FrameRequest(this, interpolate));
+		if (computingFrames.compareAndSet(false, true)) {
+			getFrameExecutor().execute(this::computeFrames);
+		}
+	}
+
+	/** Compute the frames requested until there is no pending request */
+	protected void computeFrames() {
+		do {
+			FrameRequest request;
+			while ((request = frameRequest.getAndSet(null)) != null) {
+				Frame frame = computeFrame(request);
+				if (frame != null) {
+					latestFrame.set(frame);
+					requestRender();
+				}
+			}
+			computingFrames.set(false);
+
+			// a request made after the last check and before the flag was cleared has not started a task
+		} while (frameRequest.get() != null && computingFrames.compareAndSet(false, true));
+	}
+
+	/**
+	 * Compute a frame, on the thread computing the frames
+	 *
+	 * @param request Parameters of the frame
+	 * @return Frame computed, null if there is nothing to show
+	 */
+	protected Frame computeFrame(FrameRequest request) {
+		synchronized (pendingHistograms) {
+			mapHistograms.putAll(pendingHistograms);
+			pendingHistograms.clear();
+		}
+		if (request.timeseries.length == 0 || !mapHistograms.keySet().containsAll(Arrays.asList(request.timeseries))) {
+			return null;
+		}
+
+		// interpolated from the scale space while the bandwidth changes
+		ScaleSpace scaleSpace = this.scaleSpace;
+		if (!request.interpolate || scaleSpace == null || !scaleSpace.covers(mapHistograms, request.kernelType, request.bandWidth)) {
+			scaleSpace = null;
+		}
+
+		int nbPixels = mapHistograms.get(request.timeseries[0]).size();
+		Frame frame = new Frame(recycledFrame.getAndSet(null), request.timeseries, nbPixels, request.pixelsToTrim);
+		Arrays.fill(frame.pixelTotals, 0.);
+		Arrays.fill(frame.columnCounts, 0.);
+		for (int i = 0; i < frame.timeseries.length; i++) {
+			computeLayer(frame, i, request, scaleSpace);
+		}
+		// the timeseries removed from the graph are no longer kept nor smoothed, nor part of the scale space
+		List<Timeseries> displayed = Arrays.asList(request.timeseries);
+		mapHistograms.keySet().retainAll(displayed);
+		mapSmoothedHistogram.keySet().retainAll(displayed);
+		mapSmoothingSources.keySet().retainAll(displayed);
+		computeStack(frame, request.height);
+
+		// the histograms approximated while interacting are not worth a scale space
+		if (scaleSpace == null && !request.preview && scaleSpaceDirty.getAndSet(false)) {
+			buildScaleSpace(request);
+		}
+
+		return frame;
+	}
+
+	/**
+	 * Show the latest frame computed, the frame previously shown being recycled.
+	 * To be called on the JavaFX thread.
+	 *
+	 * @return Frame shown, null if none has been computed yet
+	 */
+	protected Frame showLatestFrame() {
+		Frame frame = latestFrame.get();
+		if (frame != shownFrame) {
+			if (shownFrame != null) {
+				recycledFrame.set(shownFrame);
+			}
+			shownFrame = frame;
+			mapVertices = frame.getVertices();
+		}
+
+		return shownFrame;
+	}
+
+	/** @return Executor shared by all the graphs to compute the frames */
+	protected static synchronized ExecutorService getFrameExecutor() {
+		if (frameExecutor == null) {
+			frameExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+				Thread thread = new Thread(r, "slickgraph-frame");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		return frameExecutor;
+	}
+
+	/**
+	 * Smooth the current histograms for the ladder of bandwidths in the background
+	 *
+	 * @param request Parameters of the frame
+	 */
+	protected void buildScaleSpace(FrameRequest request) {
+		long generation = scaleSpaceGeneration.incrementAndGet();
+		if (!request.scaleSpaceEnabled || request.scaleSpaceMaxBandWidth <= 1. || mapHistograms.isEmpty()) {
+			scaleSpace = null;
+			return;
+		}
+
+		Map<Timeseries, List<Double>> histograms = new HashMap<Timeseries, List<Double>>(mapHistograms);
+		double[] bandWidths = ScaleSpace.ladder(1., request.scaleSpaceMaxBandWidth, SCALE_SPACE_RATIO);
+		KernelType kernelType = request.kernelType;
+		SmoothingEngine engine = request.engine;
+		getScaleSpaceExecutor().execute(() -> {
+			ScaleSpace built = ScaleSpace.build(histograms, bandWidths, kernelType, engine, () -> scaleSpaceGeneration.get() != generation);
+			if (built != null && scaleSpaceGeneration.get() == generation) {
+				scaleSpace = built;
 			}
 		});
+	}
 
-		computeStackedVertices();
-		computeSlgAlphas();
+	/** @return Executor shared by all the graphs to build the scale spaces */
+	protected static synchronized ExecutorService getScaleSpaceExecutor() {
+		if (scaleSpaceExecutor == null) {
+			scaleSpaceExecutor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "slickgraph-scale-space");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
 
-		needsRefresh.set(true);
+		return scaleSpaceExecutor;
 	}
 
 	/**
@@ -562,23 +1076,216 @@ public class SlickGraph extends Group {
 	 */
 	public Optional<Timeseries> pickTimeseries(double x, double y) {
 		final double ys = y * yScaleProperty.get();
-		final int xTab = (int) Math.round(x * 2. * xScaleProperty.get()) / 2 * 2;
-		Optional<Timeseries> pickedTs = !verticesReady.get() ?
-				Optional.empty() :
-				timeseries.stream()
-				.filter(ts -> mapVertices.get(ts).get(xTab).y <= ys &&
-				mapVertices.get(ts).get(xTab + 1).y >= ys)
-				.findFirst();
+		final int column = (int) Math.round(x * 2. * xScaleProperty.get()) / 2;
+		Frame frame = shownFrame;
+		int index = frame == null ? -1 : VertexBuffer.searchStack(frame.getStack(), column, ys);
+		Timeseries picked = index < 0 ? null : frame.getTimeseries()[index];
 
 		// remove the previously selected timeseries and set the new selected one
-		timeseries.stream().filter(ts -> ts.isSelected()).findFirst().ifPresent(ts -> ts.setSelected(false));
-		pickedTs.ifPresent(ts -> ts.setSelected(true));
+		if (picked != selectedTimeseries) {
+			if (selectedTimeseries != null) {
+				selectedTimeseries.setSelected(false);
+			}
+			if (picked != null) {
+				picked.setSelected(true);
+			}
+			selectedTimeseries = picked;
+		}
 
-		return pickedTs;
+		return Optional.ofNullable(picked);
 	}
 
-	/** Draw the graph */
+	/** Draw the highlight of the selected timeseries over the graph */
+	protected void renderOverlay() {
+		GraphicsContext gc = overlay.getGraphicsContext2D();
+		gc.clearRect(0, 0, scaledWidthProperty.get(), scaledHeightProperty.get());
+
+		// only the stack is drawn along with the shading, and the selection is drawn again once the size settles
+		if (showShadingProperty.get() || resizeSnapshot != null) {
+			return;
+		}
+
+		timeseries.stream().filter(ts -> ts.isSelected()).forEach(ts -> {
+			VertexBuffer vertices = mapVertices.get(ts);
+			if (vertices != null) {
+				gc.setFill(ts.getColor().desaturate());
+				gc.fillPolygon(vertices.getOutlineX(), vertices.getOutlineY(), vertices.getOutlineSize());
+				if (showCurveProperty.get()) {
+					gc.setStroke(curveColorProperty.get());
+					gc.strokePolyline(vertices.getOutlineX(), vertices.getOutlineY(), vertices.getSize());
+				}
+			}
+		});
+	}
+
+	/** Redraw the graph with the next frame of the rendering loop. Can be called from any thread */
+	protected void requestRender() {
+		needsRefresh.set(true);
+		RenderScheduler.getShared().wake();
+	}
+
+	/** Redraw the overlay with the next frame of the rendering loop. Can be called from any thread */
+	protected void requestOverlayRender() {
+		overlayNeedsRefresh.set(true);
+		RenderScheduler.getShared().wake();
+	}
+
+	/** @return True if the graph or its overlay needs to be redrawn */
+	protected boolean isDirty() {
+		return needsRefresh.get() || overlayNeedsRefresh.get();
+	}
+
+	/** Draw the graph and its overlay if they need to be redrawn, called by the rendering loop */
+	protected void renderIfNeeded() {
+		if (needsRefresh.getAndSet(false)) {
+			render();
+			overlayNeedsRefresh.set(true);
+		}
+		if (overlayNeedsRefresh.getAndSet(false)) {
+			renderOverlay();
+		}
+	}
+
+	/** Draw the latest frame computed */
 	protected void render() {
+		// the last frame is stretched until the size settles, the graph being computed for the new size then
+		Frame frame = showLatestFrame();
+		if (frame == null || resizeSnapshot != null) {
+			return;
+		}
+
+		switch (renderModeProperty.get()) {
+			case RASTER:
+				renderRaster(frame);
+				break;
+			case POLYGONS:
+				renderPolygons(frame);
+				break;
+			default:
+				renderLines(frame);
+		}
+	}
+
+	/**
+	 * Draw the graph in a pixel buffer uploaded at once to the canvas
+	 *
+	 * @param frame Frame to draw
+	 */
+	protected void renderRaster(Frame frame) {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		rasterizer.resize((int) Math.ceil(scaledWidthProperty.get()), (int) Math.ceil(scaledHeightProperty.get()));
+		rasterizer.clear(Rasterizer.toArgb(backgroundColorProperty.get()));
+
+		if (showShadingProperty.get()) {
+			// render the shading
+			VertexBuffer vertices = frame.getStack()[frame.getStack().length - 1];
+			for (int v = 0; v < vertices.getSize(); v++) {
+				rasterizer.fillColumn(vertices.getX(v), vertices.getTop(v), scaledHeightProperty.get(), (int) Math.round(frame.getSlgAlphas()[v] * 255) << 24);
+			}
+
+			// render the curve
+			if (showCurveProperty.get()) {
+				rasterizeCurve(vertices, Rasterizer.toArgb(curveColorProperty.get()));
+			}
+		} else {
+			// render the timeseries
+			frame.getVertices().entrySet().forEach(entry -> {
+				Timeseries ts = entry.getKey();
+				VertexBuffer vertices = entry.getValue();
+
+				int argb = Rasterizer.toArgb(ts.getColor());
+				for (int v = 0; v < vertices.getSize(); v++) {
+					rasterizer.fillColumn(vertices.getX(v), vertices.getTop(v), vertices.getBottom(v), argb);
+				}
+			});
+
+			// render the curve
+			if (showCurveProperty.get()) {
+				int argb = Rasterizer.toArgb(curveColorProperty.get());
+				frame.getVertices().values().forEach(vertices -> rasterizeCurve(vertices, argb));
+			}
+		}
+
+		rasterizer.draw(gc);
+	}
+
+	/**
+	 * Draw the upper edge of a timeseries in the pixel buffer
+	 *
+	 * @param vertices Vertices of the timeseries
+	 * @param argb Color of the curve
+	 */
+	protected void rasterizeCurve(VertexBuffer vertices, int argb) {
+		for (int j = 0; j < vertices.getSize() - 1; j++) {
+			rasterizer.drawLine(vertices.getX(j), vertices.getTop(j), vertices.getX(j + 1), vertices.getTop(j + 1), argb);
+		}
+	}
+
+	/**
+	 * Draw the graph with one filled polygon per timeseries and one polyline per curve, from the outlines built with the vertices
+	 *
+	 * @param frame Frame to draw
+	 */
+	protected void renderPolygons(Frame frame) {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+
+		// clear the canvas
+		gc.setFill(backgroundColorProperty.get());
+		gc.fillRect(0, 0, scaledWidthProperty.get(), scaledHeightProperty.get());
+
+		if (showShadingProperty.get()) {
+			// render the shading: the alphas of the columns stretched over the stack
+			VertexBuffer stackOutline = frame.getStackOutline();
+			int nbColumns = stackOutline.getSize();
+			if (nbColumns > 0) {
+				if (shadingStrip == null || shadingStrip.getWidth() != nbColumns) {
+					shadingStrip = new WritableImage(nbColumns, 1);
+					shadingPixels = new int[nbColumns];
+					shadingPattern = null;
+				}
+				double height = scaledHeightProperty.get();
+				if (shadingPattern == null || shadingPattern.getHeight() != height) {
+					shadingPattern = new ImagePattern(shadingStrip, -.5, 0, nbColumns, height, false);
+				}
+				for (int j = 0; j < nbColumns; j++) {
+					shadingPixels[j] = (int) Math.round(frame.getSlgAlphas()[j] * 255) << 24;
+				}
+				shadingStrip.getPixelWriter().setPixels(0, 0, nbColumns, 1, PixelFormat.getIntArgbInstance(), shadingPixels, 0, nbColumns);
+
+				gc.setFill(shadingPattern);
+				gc.fillPolygon(stackOutline.getOutlineX(), stackOutline.getOutlineY(), stackOutline.getOutlineSize());
+			}
+
+			// render the curve
+			if (showCurveProperty.get()) {
+				VertexBuffer vertices = frame.getStack()[frame.getStack().length - 1];
+				gc.setStroke(curveColorProperty.get());
+				gc.strokePolyline(vertices.getOutlineX(), vertices.getOutlineY(), vertices.getSize());
+			}
+		} else {
+			// render the timeseries
+			frame.getVertices().entrySet().forEach(entry -> {
+				Timeseries ts = entry.getKey();
+				VertexBuffer vertices = entry.getValue();
+
+				gc.setFill(ts.getColor());
+				gc.fillPolygon(vertices.getOutlineX(), vertices.getOutlineY(), vertices.getOutlineSize());
+			});
+
+			// render the curve
+			if (showCurveProperty.get()) {
+				gc.setStroke(curveColorProperty.get());
+				frame.getVertices().values().forEach(vertices -> gc.strokePolyline(vertices.getOutlineX(), vertices.getOutlineY(), vertices.getSize()));
+			}
+		}
+	}
+
+	/**
+	 * Draw the graph with one canvas line per pixel column and per curve segment
+	 *
+	 * @param frame Frame to draw
+	 */
+	protected void renderLines(Frame frame) {
 		GraphicsContext gc = canvas.getGraphicsContext2D();
 
 		// clear the canvas
@@ -588,41 +1295,108 @@ public class SlickGraph extends Group {
 		// render the shading
 		if (showShadingProperty.get()) {
 			// render the shading
-			List<Vertex> vertices = mapVertices.get(timeseries.get(timeseries.size() - 1));
-			for (int v = 0; v < vertices.size() - 1; v += 2) {
-				gc.setStroke(Color.rgb(0, 0, 0, slgAlphas.get(v / 2)));
-				gc.strokeLine(vertices.get(v).x, vertices.get(v).y, vertices.get(v + 1).x, scaledHeightProperty.get());
+			VertexBuffer vertices = frame.getStack()[frame.getStack().length - 1];
+			for (int v = 0; v < vertices.getSize(); v++) {
+				gc.setStroke(Color.rgb(0, 0, 0, frame.getSlgAlphas()[v]));
+				gc.strokeLine(vertices.getX(v), vertices.getTop(v), vertices.getX(v), scaledHeightProperty.get());
 			}
 
 			// render the curve
 			if (showCurveProperty.get()) {
 				gc.setStroke(curveColorProperty.get());
-				for (int j = 0; j < vertices.size() - 3; j += 2) {
-					gc.strokeLine(vertices.get(j).x, vertices.get(j).y, vertices.get(j + 2).x, vertices.get(j + 2).y);
+				for (int j = 0; j < vertices.getSize() - 1; j++) {
+					gc.strokeLine(vertices.getX(j), vertices.getTop(j), vertices.getX(j + 1), vertices.getTop(j + 1));
 				}
 			}
 		} else {
 			// render the timeseries
-			mapVertices.entrySet().forEach(entry -> {
+			frame.getVertices().entrySet().forEach(entry -> {
 				Timeseries ts = entry.getKey();
-				List<Vertex> vertices = mapVertices.get(ts);
+				VertexBuffer vertices = entry.getValue();
 
-				gc.setStroke(ts.isSelected() ? ts.getColor().desaturate() : ts.getColor());
-				for (int v = 0; v < vertices.size() - 1; v += 2) {
-					gc.strokeLine(vertices.get(v).x, vertices.get(v).y, vertices.get(v + 1).x, vertices.get(v + 1).y);
+				gc.setStroke(ts.getColor());
+				for (int v = 0; v < vertices.getSize(); v++) {
+					gc.strokeLine(vertices.getX(v), vertices.getTop(v), vertices.getX(v), vertices.getBottom(v));
 				}
 			});
 
 			// render the curve
 			if (showCurveProperty.get()) {
 				gc.setStroke(curveColorProperty.get());
-				mapVertices.values().forEach(vertices -> {
-					for (int j = 0; j < vertices.size() - 3; j += 2) {
-						gc.strokeLine(vertices.get(j).x, vertices.get(j).y, vertices.get(j + 2).x, vertices.get(j + 2).y);
+				frame.getVertices().values().forEach(vertices -> {
+					for (int j = 0; j < vertices.getSize() - 1; j++) {
+						gc.strokeLine(vertices.getX(j), vertices.getTop(j), vertices.getX(j + 1), vertices.getTop(j + 1));
 					}
 				});
 			}
 		}
 	}
 
+	/** Histogram a smoothed histogram has been convolved from, with the parameters of the convolution */
+	protected static class SmoothingSource {
+
+		/** Values of the histogram, never modified once built */
+		protected final double[] histogram;
+
+		protected final SmoothingEngine engine;
+
+		protected final double bandWidth;
+
+		protected final KernelType kernelType;
+
+		protected SmoothingSource(double[] histogram, FrameRequest request) {
+			this.histogram = histogram;
+			engine = request.engine;
+			bandWidth = request.bandWidth;
+			kernelType = request.kernelType;
+		}
+
+		/**
+		 * @param request Parameters of a frame
+		 * @return True if the frame convolves with the same parameters
+		 */
+		protected boolean isSmoothedWith(FrameRequest request) {
+			return engine == request.engine && bandWidth == request.bandWidth && kernelType == request.kernelType;
+		}
+
+	}
+
+	/** Parameters of a frame, taken on the JavaFX thread when the frame is requested */
+	protected static class FrameRequest {
+
+		protected final Timeseries[] timeseries;
+
+		protected final double bandWidth;
+
+		protected final KernelType kernelType;
+
+		protected final SmoothingEngine engine;
+
+		protected final int pixelsToTrim;
+
+		protected final double height;
+
+		protected final boolean scaleSpaceEnabled;
+
+		protected final double scaleSpaceMaxBandWidth;
+
+		protected final boolean interpolate;
+
+		protected final boolean preview;
+
+		protected FrameRequest(SlickGraph slickGraph, boolean interpolate) {
+			timeseries = slickGraph.timeseries.toArray(new Timeseries[0]);
+			bandWidth = slickGraph.kernelBandWidthProperty.get();
+			kernelType = slickGraph.kernelTypeProperty.get();
+			preview = slickGraph.interactingProperty.get();
+			engine = preview ? slickGraph.previewSmoothingEngineProperty.get() : slickGraph.smoothingEngineProperty.get();
+			pixelsToTrim = slickGraph.pixelsToTrimProperty.get();
+			height = slickGraph.scaledHeightProperty.get();
+			scaleSpaceEnabled = slickGraph.scaleSpaceEnabledProperty.get();
+			scaleSpaceMaxBandWidth = slickGraph.scaleSpaceMaxBandWidthProperty.get();
+			this.interpolate = interpolate;
+		}
+
+	}
+
 }
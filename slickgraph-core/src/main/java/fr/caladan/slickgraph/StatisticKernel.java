@@ -1,9 +1,8 @@
 package fr.caladan.slickgraph;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
 
 import javafx.util.Pair;
 
@@ -14,52 +13,119 @@ public class StatisticKernel {
 	
 	public enum KernelType {
 		GAUSSIAN,
+		EPANECHNIKOV,
+		TRIANGULAR,
+		BOX,
+		TRICUBE,
 	};
 	
-	/** Kernel values cached for futur usage */
-	protected static Map<Pair<Double, KernelType>, List<Double>> cachedValues = new HashMap<Pair<Double, KernelType>, List<Double>>();
+	/** Largest number of kernels kept in the cache */
+	protected static final int MAX_CACHED_KERNELS = 64;
+	
+	/** Kernel values cached for futur usage, least recently used first. Shared by all the graphs, so only accessed while holding its lock */
+	protected static Map<Pair<Double, KernelType>, double[]> cachedValues = new LinkedHashMap<Pair<Double, KernelType>, double[]>(16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Pair<Double, KernelType>, double[]> eldest) {
+			return size() > MAX_CACHED_KERNELS;
+		}
+	};
 	
 	/**
-	 * Return the kernel values according to its type and bandwidth
+	 * Return the kernel values according to its type and bandwidth.
+	 * The array is shared with the other callers and must not be modified.
 	 * 
 	 * @param bandWidth Kernel bandwidth
 	 * @param kernelType Kernel type
 	 * @return Kernel values
 	 */
-	public static List<Double> kernelValues(double bandWidth, KernelType kernelType) {
+	public static double[] kernelValues(double bandWidth, KernelType kernelType) {
 		// return the cached value if any
 		Pair<Double, KernelType> key = new Pair<Double, KernelType>(bandWidth, kernelType);
-		if (cachedValues.containsKey(key)) {
-			return cachedValues.get(key);
+		synchronized (cachedValues) {
+			double[] kernelValues = cachedValues.get(key);
+			if (kernelValues != null) {
+				return kernelValues;
+			}
 		}
 
 		// otherwise, compute the kernel values
-		List<Double> kernelValues;
+		double[] kernelValues;
 		switch (kernelType) {
 			case GAUSSIAN:
 				kernelValues = gaussian(bandWidth);
 				break;
+			case EPANECHNIKOV:
+				kernelValues = compactSupport(bandWidth, u -> 1. - u * u);
+				break;
+			case TRIANGULAR:
+				kernelValues = compactSupport(bandWidth, u -> 1. - Math.abs(u));
+				break;
+			case BOX:
+				kernelValues = compactSupport(bandWidth, u -> 1.);
+				break;
+			case TRICUBE:
+				kernelValues = compactSupport(bandWidth, u -> Math.pow(1. - Math.pow(Math.abs(u), 3), 3));
+				break;
 			default:
-				kernelValues = new ArrayList<Double>();
+				kernelValues = new double[0];
 		}
 		
 		// cache the values
-		cachedValues.put(key, kernelValues);
+		synchronized (cachedValues) {
+			cachedValues.put(key, kernelValues);
+		}
 
 		return kernelValues;
 	}
 	
-	protected static List<Double> gaussian(double bandWidth) {
+	/**
+	 * Return the distance from the center beyond which the kernel is 0, or negligible for the Gaussian kernel
+	 * 
+	 * @param bandWidth Kernel bandwidth
+	 * @param kernelType Kernel type
+	 * @return Radius of the kernel, in pixels
+	 */
+	public static double radius(double bandWidth, KernelType kernelType) {
+		return kernelType == KernelType.GAUSSIAN ? 3. * bandWidth : bandWidth;
+	}
+	
+	protected static double[] gaussian(double bandWidth) {
 		double h = 2. * bandWidth * bandWidth;
 		double v = 1. / (bandWidth* Math.sqrt(2. * Math.PI));
 
 		int kernelSize = (int) (Math.ceil(bandWidth * 3) * 2 + 1);
-		List<Double> gaussianValues = new ArrayList<Double>(kernelSize);
-		for (double i = 0; i < kernelSize; i++) {
-			gaussianValues.add(Math.exp(-Math.pow(i - kernelSize / 2, 2) / h) * v);
+		double[] gaussianValues = new double[kernelSize];
+		for (int i = 0; i < kernelSize; i++) {
+			gaussianValues[i] = Math.exp(-Math.pow(i - kernelSize / 2, 2) / h) * v;
 		}
 
 		return gaussianValues;
 	}
 	
+	/**
+	 * Sample a kernel that is 0 beyond one bandwidth from its center, normalized so that its values sum to 1
+	 * 
+	 * @param bandWidth Kernel bandwidth
+	 * @param profile Kernel profile, for distances to the center in [-1, 1] bandwidth
+	 * @return Kernel values
+	 */
+	protected static double[] compactSupport(double bandWidth, DoubleUnaryOperator profile) {
+		int radius = (int) Math.ceil(bandWidth);
+		double[] values = new double[radius * 2 + 1];
+		double sum = 0.;
+		for (int i = 0; i < values.length; i++) {
+			double u = (i - radius) / bandWidth;
+			values[i] = Math.abs(u) > 1. ? 0. : Math.max(0., profile.applyAsDouble(u));
+			sum += values[i];
+		}
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] /= sum;
+		}
+
+		return values;
+	}
+	
 }
@@ -1,12 +1,13 @@
 package fr.caladan.slickgraph;
 
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.scene.paint.Color;
 
 /**
@@ -50,30 +51,120 @@ public class Timeseries {
 		selectedProperty.set(selected);
 	}
 
-	/** List of timestamps that constitutes the timeseries */
-	protected ObservableList<Double> data;
-	public ObservableList<Double> getData() {
+	/** Timestamps that constitute the timeseries, stored as primitive values and replaced as a whole when set */
+	protected volatile Timestamps data;
+	public Timestamps getTimestamps() {
 		return data;
 	}
+	/**
+	 * Return a read-only view of the timestamps, boxed on access.
+	 * The timestamps used to be stored in a modifiable ObservableList returned here:
+	 * they are now changed with setData, setTimestamps or append, and the changes are observed with an AppendListener or by the loaders.
+	 * The view follows the timestamps replaced afterwards.
+	 *
+	 * @return Unmodifiable list of the timestamps
+	 */
+	public List<Double> getData() {
+		class DataView extends AbstractList<Double> implements RandomAccess {
+			@Override
+			public Double get(int index) {
+				Timestamps timestamps = data;
+				if (index < 0 || index >= timestamps.size()) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", size: " + timestamps.size());
+				}
+				return timestamps.get(index);
+			}
+
+			@Override
+			public int size() {
+				return data.asList().size();
+			}
+		}
+
+		return new DataView();
+	}
 	public void setData(List<Double> data) throws Exception {
 		if (data == null) {
-			this.data.clear();
+			this.data = new TimestampBuffer();
+			return;
+		}
+
+		// unbox the timestamps once, the validation is done on the primitive values
+		double[] values = new double[data.size()];
+		int i = 0;
+		for (Double d : data) {
+			values[i++] = d;
+		}
+		setTimestamps(values);
+	}
+	/**
+	 * Replace the timestamps with a copy of the given ones.
+	 * A new buffer is stored rather than refilling the current one, so that the threads still reading the previous timestamps are not disturbed
+	 * and the loaders tell from its identity that their bounds and histograms are outdated.
+	 *
+	 * @param data Timestamps of the timeseries, strictly increasing
+	 * @throws Exception If the timestamps are not strictly increasing
+	 */
+	public void setTimestamps(double[] data) throws Exception {
+		if (data == null) {
+			this.data = new TimestampBuffer();
 			return;
 		}
 
 		// check if the timeseries is valid: timestamps are strictly growing
 		int i = 0;
 		boolean isValid = true;
-		while (i < data.size() - 1 && isValid) {
-			isValid = data.get(i) < data.get(i + 1);
+		while (i < data.length - 1 && isValid) {
+			isValid = data[i] < data[i + 1];
 			i++;
 		}
 		if (!isValid) {
 			throw new Exception("Timeseries is not valid: timestamps should be strictly increasing");
 		}
 
-		this.data.clear();
-		this.data.addAll(data);
+		this.data = new TimestampBuffer(data);
+	}
+
+	/**
+	 * Append a batch of timestamps, e.g. the latest events of a live feed, and notify the append listeners.
+	 * Only the batch and its first timestamp against the last one already stored are validated, the timestamps stored are not copied again.
+	 * There must be a single thread appending, the timestamps can be read meanwhile.
+	 *
+	 * @param data Timestamps to append, strictly increasing and after the last timestamp of the timeseries
+	 * @throws Exception If the timestamps are not valid, or if they are stored outside of the heap
+	 */
+	public void append(double[] data) throws Exception {
+		if (data == null || data.length == 0) {
+			return;
+		}
+		if (!(this.data instanceof TimestampBuffer)) {
+			throw new Exception("Timeseries is not appendable: timestamps are stored outside of the heap");
+		}
+
+		// check the batch against the tail only: timestamps are strictly growing
+		TimestampBuffer buffer = (TimestampBuffer) this.data;
+		boolean isValid = buffer.isEmpty() || buffer.last() < data[0];
+		for (int i = 0; i < data.length - 1 && isValid; i++) {
+			isValid = data[i] < data[i + 1];
+		}
+		if (!isValid) {
+			throw new Exception("Timeseries is not valid: timestamps should be strictly increasing");
+		}
+
+		long from = buffer.size();
+		buffer.addAll(data, 0, data.length);
+		for (AppendListener listener : appendListeners) {
+			listener.appended(this, from);
+		}
+	}
+
+	/** Listeners notified when timestamps are appended */
+	protected List<AppendListener> appendListeners;
+	public void addAppendListener(AppendListener listener) {
+		appendListeners.add(listener);
+	}
+	public void removeAppendListener(AppendListener listener) {
+		appendListeners.remove(listener);
 	}
 
 	/**
@@ -87,7 +178,8 @@ public class Timeseries {
 		nameProperty = new SimpleStringProperty(name);
 		colorProperty = new SimpleObjectProperty<Color>(color);
 		selectedProperty = new SimpleBooleanProperty(false);
-		this.data = FXCollections.observableArrayList();
+		appendListeners = new CopyOnWriteArrayList<AppendListener>();
+		this.data = new TimestampBuffer();
 		try {
 			setData(data);
 		} catch (Exception e) {
@@ -95,6 +187,42 @@ public class Timeseries {
 		}
 	}
 
+	/**
+	 * Create a timeseries from primitive timestamps.
+	 * A factory rather than a constructor, so that new Timeseries(name, color, null) stays unambiguous.
+	 *
+	 * @param name Name of the timeseries
+	 * @param color Color used for rendering
+	 * @param data Array of timestamps contained in the timeseries. Must be sorted
+	 * @return Timeseries holding a copy of the timestamps
+	 */
+	public static Timeseries fromArray(String name, Color color, double[] data) {
+		Timeseries timeseries = new Timeseries(name, color, null);
+		try {
+			timeseries.setTimestamps(data);
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+
+		return timeseries;
+	}
+
+	/**
+	 * Create a timeseries with timestamps stored elsewhere, e.g. in a memory-mapped file.
+	 * The timestamps are not copied nor validated.
+	 *
+	 * @param name Name of the timeseries
+	 * @param color Color used for rendering
+	 * @param timestamps Timestamps contained in the timeseries. Must be strictly increasing
+	 * @return Timeseries reading the timestamps
+	 */
+	public static Timeseries fromTimestamps(String name, Color color, Timestamps timestamps) {
+		Timeseries timeseries = new Timeseries(name, color, null);
+		timeseries.data = timestamps;
+
+		return timeseries;
+	}
+
 	/**
 	 * Constructor that initializes the color to black by default
 	 *
@@ -131,4 +259,16 @@ public class Timeseries {
 		this("", Color.BLACK, null);
 	}
 
+	/** Listener notified on the thread appending, once timestamps have been appended to a timeseries */
+	@FunctionalInterface
+	public interface AppendListener {
+
+		/**
+		 * @param timeseries Timeseries the timestamps have been appended to
+		 * @param from Index of the first timestamp appended
+		 */
+		public void appended(Timeseries timeseries, long from);
+
+	}
+
 }
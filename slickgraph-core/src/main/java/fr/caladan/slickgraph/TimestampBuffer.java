@@ -0,0 +1,177 @@
+package fr.caladan.slickgraph;
+
+import java.util.Arrays;
+
+/**
+ * Growable storage of timestamps backed by chunks of primitive doubles.
+ * Only the last chunk is ever reallocated when growing, full chunks are never copied.
+ */
+public class TimestampBuffer implements Timestamps {
+
+	/** Number of bits used to address a value inside a chunk */
+	protected static final int CHUNK_BITS = 16;
+
+	/** Number of values stored in a chunk */
+	protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	/** Mask extracting the position inside a chunk from an index */
+	protected static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/** Initial capacity of a new chunk, so that small series do not allocate a full chunk */
+	protected static final int INITIAL_CHUNK_CAPACITY = 256;
+
+	/** Chunks of timestamps, all full except the last one */
+	protected double[][] chunks;
+
+	/** Number of chunks in use */
+	protected int nbChunks;
+
+	/** Number of timestamps stored, published after the appended values are written so that they can be read while appending */
+	protected volatile long size;
+
+	/** Number of times the buffer has been cleared, e.g. to replace the timestamps */
+	protected volatile long modificationCount;
+
+	/** Public default constructor - initializes an empty buffer */
+	public TimestampBuffer() {
+		chunks = new double[4][];
+		nbChunks = 0;
+		size = 0;
+	}
+
+	/**
+	 * Constructor that initializes the buffer with a copy of the given values
+	 *
+	 * @param values Timestamps to store
+	 */
+	public TimestampBuffer(double[] values) {
+		this();
+		addAll(values, 0, values.length);
+	}
+
+	@Override
+	public long getModificationCount() {
+		return modificationCount;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public double get(long index) {
+		long size = this.size;
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return chunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
+	}
+
+	@Override
+	public double first() {
+		return get(0);
+	}
+
+	@Override
+	public double last() {
+		return get(size - 1);
+	}
+
+	@Override
+	public long lowerBound(double timestamp) {
+		// the chunks are counted from the size, a chunk being appended is not searched before its values are published
+		long size = this.size;
+		if (size == 0 || timestamp <= chunks[0][0]) {
+			return 0;
+		}
+		if (timestamp > get(size - 1)) {
+			return size;
+		}
+		int nbChunks = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+
+		// find the last chunk starting strictly before the timestamp
+		int low = 0;
+		int high = nbChunks - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (chunks[mid][0] < timestamp) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		// then search inside this chunk
+		int chunkLength = low == nbChunks - 1 ? (int) (size - ((long) low << CHUNK_BITS)) : CHUNK_SIZE;
+		int index = Arrays.binarySearch(chunks[low], 0, chunkLength, timestamp);
+		index = index >= 0 ? index : -index - 1;
+
+		return ((long) low << CHUNK_BITS) + index;
+	}
+
+	/**
+	 * Append a timestamp at the end of the buffer.
+	 * There must be a single thread appending, the timestamps can be read meanwhile.
+	 * The caller is responsible for keeping the timestamps strictly increasing.
+	 *
+	 * @param timestamp Timestamp to append
+	 */
+	public void add(double timestamp) {
+		int offset = (int) (size & CHUNK_MASK);
+		ensureCapacity(offset, 1);
+		chunks[nbChunks - 1][offset] = timestamp;
+		size++;
+	}
+
+	/**
+	 * Append a range of timestamps at the end of the buffer.
+	 * There must be a single thread appending, the timestamps can be read meanwhile.
+	 * The caller is responsible for keeping the timestamps strictly increasing.
+	 *
+	 * @param values Array containing the timestamps to append
+	 * @param from Index of the first value to append
+	 * @param to Index after the last value to append
+	 */
+	public void addAll(double[] values, int from, int to) {
+		int i = from;
+		while (i < to) {
+			int offset = (int) (size & CHUNK_MASK);
+			int length = Math.min(CHUNK_SIZE - offset, to - i);
+			ensureCapacity(offset, length);
+			System.arraycopy(values, i, chunks[nbChunks - 1], offset, length);
+			size += length;
+			i += length;
+		}
+	}
+
+	/**
+	 * Remove all the timestamps and release the chunks.
+	 * Unlike appending, clearing is not safe while the buffer is read: the timestamps of a timeseries are replaced with a new buffer instead.
+	 */
+	public void clear() {
+		size = 0;
+		modificationCount++;
+		Arrays.fill(chunks, 0, nbChunks, null);
+		nbChunks = 0;
+	}
+
+	/**
+	 * Make sure the last chunk can receive new values, allocating a new chunk or growing the last one if needed
+	 *
+	 * @param offset Position inside the last chunk of the first value to write
+	 * @param length Number of values to write, must not cross the chunk boundary
+	 */
+	protected void ensureCapacity(int offset, int length) {
+		if (offset == 0) {
+			if (nbChunks == chunks.length) {
+				chunks = Arrays.copyOf(chunks, chunks.length * 2);
+			}
+			chunks[nbChunks++] = new double[Math.max(INITIAL_CHUNK_CAPACITY, length)];
+		} else if (offset + length > chunks[nbChunks - 1].length) {
+			int capacity = Math.min(CHUNK_SIZE, Math.max(offset + length, chunks[nbChunks - 1].length * 2));
+			chunks[nbChunks - 1] = Arrays.copyOf(chunks[nbChunks - 1], capacity);
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package fr.caladan.slickgraph;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of a sequence of strictly increasing timestamps.
+ * Indices are longs so that a series is not bounded by the size of a Java array.
+ */
+public interface Timestamps {
+
+	/** @return Number of timestamps in the sequence */
+	public long size();
+
+	/**
+	 * @param index Index of the timestamp
+	 * @return Timestamp at the given index
+	 */
+	public double get(long index);
+
+	/**
+	 * Return the index of the first timestamp greater than or equal to a given value
+	 *
+	 * @param timestamp Value to look for
+	 * @return Index of the first timestamp not lower than the value, size() if there is none
+	 */
+	public long lowerBound(double timestamp);
+
+	/**
+	 * Return the index of the first timestamp greater than or equal to a given value, searching only in a range of indices.
+	 * The caller guarantees that the answer lies in the range.
+	 *
+	 * @param timestamp Value to look for
+	 * @param from Lowest possible index
+	 * @param to Highest possible index, may be size()
+	 * @return Index of the first timestamp not lower than the value
+	 */
+	public default long lowerBound(double timestamp, long from, long to) {
+		long low = from;
+		long high = to;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (get(mid) < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/** Number of events scanned linearly from the previous hit before galloping, when locating sorted timestamps */
+	public static final int LINEAR_SCAN = 4;
+
+	/**
+	 * Locate sorted values, each search starting from the previous hit.
+	 * The next few timestamps are scanned linearly, which is enough when there are few events between two values,
+	 * then the search gallops with exponential steps and ends with a binary search of the last step.
+	 * Locating n values costs O(n + log(size)) when the events are dense, instead of O(n log(size)) for independent searches.
+	 *
+	 * @param values Values to look for, sorted
+	 * @param indices Output array receiving for each value the index of the first timestamp not lower than it
+	 * @param from Index of the first value to locate
+	 * @param to Index after the last value to locate
+	 */
+	public default void lowerBounds(double[] values, long[] indices, int from, int to) {
+		if (from >= to) {
+			return;
+		}
+
+		long size = size();
+		long index = lowerBound(values[from]);
+		indices[from] = index;
+		for (int i = from + 1; i < to; i++) {
+			double value = values[i];
+
+			int scanned = 0;
+			while (index < size && scanned < LINEAR_SCAN && get(index) < value) {
+				index++;
+				scanned++;
+			}
+
+			// still before the value after the linear scan: gallop from there
+			if (scanned == LINEAR_SCAN && index < size && get(index) < value) {
+				long low = index;
+				long step = 1;
+				long high = low + step;
+				while (high < size && get(high) < value) {
+					low = high;
+					step <<= 1;
+					high = low + step;
+				}
+				index = lowerBound(value, low + 1, Math.min(high, size));
+			}
+
+			indices[i] = index;
+		}
+	}
+
+	/**
+	 * Number of times the timestamps have been replaced, so that the structures built from them can tell they are outdated.
+	 * Appending does not change it, the timestamps already there stay the same.
+	 *
+	 * @return Modification count, 0 for timestamps that never change
+	 */
+	public default long getModificationCount() {
+		return 0;
+	}
+
+	/** @return True if the sequence does not contain any timestamp */
+	public default boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/** @return Earliest timestamp of the sequence */
+	public default double first() {
+		return get(0);
+	}
+
+	/** @return Latest timestamp of the sequence */
+	public default double last() {
+		return get(size() - 1);
+	}
+
+	/**
+	 * Boxed, unmodifiable list view over the timestamps.
+	 * Only meant for compatibility with code working on lists, the loaders work on the primitive values directly.
+	 *
+	 * @return List view of the timestamps
+	 */
+	public default List<Double> asList() {
+		if (size() > Integer.MAX_VALUE) {
+			throw new UnsupportedOperationException("Too many timestamps to be viewed as a list");
+		}
+
+		class ListView extends AbstractList<Double> implements RandomAccess {
+			@Override
+			public Double get(int index) {
+				if (index < 0 || index >= size()) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+				}
+				return Timestamps.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return (int) Timestamps.this.size();
+			}
+		}
+
+		return new ListView();
+	}
+
+}
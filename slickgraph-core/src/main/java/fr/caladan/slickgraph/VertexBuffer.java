@@ -0,0 +1,151 @@
+package fr.caladan.slickgraph;
+
+/**
+ * Vertices of a stacked timeseries for rendering in JavaFX canvas, one column per pixel.
+ * They are stored in primitive arrays reused from one frame to the next.
+ */
+public class VertexBuffer {
+
+	/** Horizontal position of each column */
+	protected double[] x;
+
+	/** Vertical position of the top of each column */
+	protected double[] top;
+
+	/** Vertical position of the bottom of each column */
+	protected double[] bottom;
+
+	/** Outline of the area covered by the columns: the tops from left to right, then the bottoms from right to left */
+	protected double[] outlineX;
+	public double[] getOutlineX() {
+		return outlineX;
+	}
+	protected double[] outlineY;
+	public double[] getOutlineY() {
+		return outlineY;
+	}
+
+	/** Number of columns */
+	protected int size;
+	public int getSize() {
+		return size;
+	}
+
+	/** Public default constructor - initializes an empty buffer */
+	public VertexBuffer() {
+		this(0);
+	}
+
+	/**
+	 * Public constructor that allocates the buffer for a number of columns
+	 *
+	 * @param capacity Number of columns
+	 */
+	public VertexBuffer(int capacity) {
+		x = new double[capacity];
+		top = new double[capacity];
+		bottom = new double[capacity];
+		outlineX = new double[2 * capacity];
+		outlineY = new double[2 * capacity];
+		size = 0;
+	}
+
+	/**
+	 * Set the number of columns, the arrays being reallocated only if they are too small
+	 *
+	 * @param size Number of columns
+	 */
+	public void resize(int size) {
+		if (size > x.length) {
+			x = new double[size];
+			top = new double[size];
+			bottom = new double[size];
+			outlineX = new double[2 * size];
+			outlineY = new double[2 * size];
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Set the vertices of a column
+	 *
+	 * @param i Index of the column
+	 * @param x Horizontal position
+	 * @param top Vertical position of the top
+	 * @param bottom Vertical position of the bottom
+	 */
+	public void set(int i, double x, double top, double bottom) {
+		this.x[i] = x;
+		this.top[i] = top;
+		this.bottom[i] = bottom;
+	}
+
+	/**
+	 * Build the outline of the area covered by the columns, once the columns are set.
+	 * Its first half is the curve of the timeseries.
+	 */
+	public void buildOutline() {
+		for (int i = 0; i < size; i++) {
+			outlineX[i] = x[i];
+			outlineY[i] = top[i];
+			outlineX[2 * size - 1 - i] = x[i];
+			outlineY[2 * size - 1 - i] = bottom[i];
+		}
+	}
+
+	/** @return Number of points of the outline */
+	public int getOutlineSize() {
+		return 2 * size;
+	}
+
+	public double getX(int i) {
+		return x[i];
+	}
+
+	public double getTop(int i) {
+		return top[i];
+	}
+
+	public double getBottom(int i) {
+		return bottom[i];
+	}
+
+	/**
+	 * Search the timeseries of a stack covering a position, in O(log(number of timeseries))
+	 *
+	 * @param stack Vertices of the timeseries from the bottom of the stack to its top, the bottom of each being the top of the previous one
+	 * @param column Index of the column
+	 * @param y Vertical position
+	 * @return Index in the stack of the timeseries covering the position, -1 if none
+	 */
+	public static int searchStack(VertexBuffer[] stack, int column, double y) {
+		if (stack.length == 0 || column < 0 || column >= stack[0].size) {
+			return -1;
+		}
+
+		// the tops go up along the stack: search the lowest timeseries whose top is above the position
+		int low = 0;
+		int high = stack.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (stack[mid].top[column] <= y) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+
+		return low < stack.length && stack[low].bottom[column] >= y ? low : -1;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			sb.append(i == 0 ? "" : ", ").append("[").append(x[i]).append(", ").append(top[i]).append(" - ").append(bottom[i]).append("]");
+		}
+
+		return sb.append("]").toString();
+	}
+
+}
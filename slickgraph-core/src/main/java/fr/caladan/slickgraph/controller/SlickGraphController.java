@@ -1,15 +1,26 @@
 package fr.caladan.slickgraph.controller;
 
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import fr.caladan.slickgraph.SlickGraph;
+import fr.caladan.slickgraph.Timeseries;
 import fr.caladan.slickgraph.dataloader.TimeseriesLoader;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.Pane;
+import javafx.util.Duration;
 
 /**
  * Controller managing the events from the view and model
@@ -28,7 +39,25 @@ public abstract class SlickGraphController implements Initializable {
 
 	/** Horizontal coordinate of the last mouse event */
 	protected double origMouseX;
+
+	/** Default time without drag nor scroll after which the graph is refined, in milliseconds */
+	protected static final double DEFAULT_REFINE_DELAY = 150.;
+
+	/** Replaces the frames approximated while dragging or scrolling with an exact one once the input is idle */
+	protected PauseTransition refine;
+	public Duration getRefineDelay() {
+		return refine.getDuration();
+	}
+	public void setRefineDelay(Duration refineDelay) {
+		refine.setDuration(refineDelay);
+	}
 	
+	/** Index of the first timestamp appended to each timeseries since the JavaFX thread last handled the appends */
+	protected Map<Timeseries, Long> pendingAppends;
+
+	/** Listener of the timestamps appended to the timeseries, on the thread appending */
+	protected Timeseries.AppendListener appendListener;
+
 	/** Load the timeseries loader to work with */
 	protected abstract void initializeTimeseriesLoader();
 
@@ -39,6 +68,11 @@ public abstract class SlickGraphController implements Initializable {
 	public void initialize(URL location, ResourceBundle resources) {
 		initializeTimeseriesLoader();
 
+		refine = new PauseTransition(Duration.millis(DEFAULT_REFINE_DELAY));
+		refine.setOnFinished(e -> refine());
+		pendingAppends = new ConcurrentHashMap<Timeseries, Long>();
+		appendListener = this::onAppend;
+
 		slickGraph = new SlickGraph();
 		insertSlickGraph(true);
 		bindEventListeners();
@@ -74,18 +108,25 @@ public abstract class SlickGraphController implements Initializable {
 		// layout events
 		slickGraph.scaledWidthProperty().addListener(e -> {
 			timeseriesLoader.setNbTimeSlices(slickGraph.getScaledWidth());
-			timeseriesLoader.updateTimeWindow(timeseriesLoader.getStartTimeWindow(), timeseriesLoader.getEndTimeWindow());
-			slickGraph.update(timeseriesLoader.getHistograms());
+			updateGraph(timeseriesLoader.updateTimeWindowAsync(timeseriesLoader.getStartTimeWindow(), timeseriesLoader.getEndTimeWindow()));
 		});
 
 		// model events
 		slickGraph.pixelsToTrimProperty().addListener(e -> {
 			timeseriesLoader.setPixelsToTrim(slickGraph.getPixelsToTrim());
-			timeseriesLoader.updateTimeWindow(timeseriesLoader.getStartTimeWindow(), timeseriesLoader.getEndTimeWindow());
-			slickGraph.update(timeseriesLoader.getHistograms());
+			updateGraph(timeseriesLoader.updateTimeWindowAsync(timeseriesLoader.getStartTimeWindow(), timeseriesLoader.getEndTimeWindow()));
 		});
 
 		slickGraph.getTimeseries().bind(timeseriesLoader.getTimeseries());
+
+		// live events
+		timeseriesLoader.getTimeseries().forEach(ts -> ts.addAppendListener(appendListener));
+		timeseriesLoader.getTimeseries().addListener((ListChangeListener<Timeseries>) c -> {
+			while (c.next()) {
+				c.getRemoved().forEach(ts -> ts.removeAppendListener(appendListener));
+				c.getAddedSubList().forEach(ts -> ts.addAppendListener(appendListener));
+			}
+		});
 	}
 
 	protected void onMousePressed(MouseEvent event) {
@@ -97,14 +138,88 @@ public abstract class SlickGraphController implements Initializable {
 	}
 
 	protected void onMouseDragged(MouseEvent event) {
-		timeseriesLoader.pan(origMouseX - event.getSceneX());
+		interact();
+		updateGraph(timeseriesLoader.panAsync(origMouseX - event.getSceneX()));
 		origMouseX = event.getSceneX();
-		slickGraph.update(timeseriesLoader.getHistograms());
 	}
 
 	protected void onMouseScroll(ScrollEvent event) {
-		timeseriesLoader.zoom(event.getDeltaY());
-		slickGraph.update(timeseriesLoader.getHistograms());
+		interact();
+		updateGraph(timeseriesLoader.zoomAsync(event.getDeltaY()));
+	}
+
+	/**
+	 * Update the histograms once timestamps have been appended to a timeseries.
+	 * The batches appended before the JavaFX thread handles them are handled at once.
+	 *
+	 * @param timeseries Timeseries the timestamps have been appended to
+	 * @param from Index of the first timestamp appended
+	 */
+	protected void onAppend(Timeseries timeseries, long from) {
+		if (pendingAppends.putIfAbsent(timeseries, from) != null) {
+			return;
+		}
+
+		Platform.runLater(() -> {
+			long first = pendingAppends.remove(timeseries);
+			timeseriesLoader.appendAsync(timeseries, first)
+					.thenAcceptAsync(slickGraph::updateTail, Platform::runLater)
+					.exceptionally(this::reportAppendError);
+		});
+	}
+
+	/**
+	 * Report an error raised while updating the histograms for appended timestamps, the graph keeping its previous histograms
+	 *
+	 * @param e Error, wrapped by the asynchronous computation
+	 * @return Nothing
+	 */
+	protected Void reportAppendError(Throwable e) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		System.err.println("Could not update the graph with the appended timestamps: " + cause);
+		return null;
+	}
+
+	/** Approximate the frames while the user drags or scrolls, until the input stays idle for the refine delay */
+	protected void interact() {
+		if (!slickGraph.isInteracting()) {
+			timeseriesLoader.setPreview(true);
+			slickGraph.setInteracting(true);
+		}
+		refine.playFromStart();
+	}
+
+	/** Replace the approximated frame with an exact one */
+	protected void refine() {
+		timeseriesLoader.setPreview(false);
+		slickGraph.setInteracting(false);
+		updateGraph(timeseriesLoader.updateTimeWindowAsync(timeseriesLoader.getStartTimeWindow(), timeseriesLoader.getEndTimeWindow()));
+	}
+
+	/**
+	 * Update the Slick Graph on the JavaFX thread once the histograms are computed.
+	 * Nothing is done if the computation has been superseded by a newer one, the other errors are reported.
+	 *
+	 * @param histograms Histograms being computed by the loader
+	 */
+	protected void updateGraph(CompletableFuture<Map<Timeseries, List<Double>>> histograms) {
+		histograms.thenAcceptAsync(slickGraph::update, Platform::runLater)
+				.exceptionally(this::reportUpdateError);
+	}
+
+	/**
+	 * Report an error raised while computing the histograms of the time window, the graph keeping its previous histograms.
+	 * The computations cancelled because a newer time window has been requested are not reported.
+	 *
+	 * @param e Error, wrapped by the asynchronous computation
+	 * @return Nothing
+	 */
+	protected Void reportUpdateError(Throwable e) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		if (!(cause instanceof CancellationException)) {
+			System.err.println("Could not update the graph with the time window: " + cause);
+		}
+		return null;
 	}
 
 }
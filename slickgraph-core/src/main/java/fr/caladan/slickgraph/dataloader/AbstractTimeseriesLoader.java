@@ -0,0 +1,973 @@
+package fr.caladan.slickgraph.dataloader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import fr.caladan.slickgraph.ArrayKernels;
+import fr.caladan.slickgraph.HistogramList;
+import fr.caladan.slickgraph.Timeseries;
+import fr.caladan.slickgraph.Timestamps;
+import javafx.beans.property.ListProperty;
+import javafx.beans.property.MapProperty;
+import javafx.beans.property.SimpleListProperty;
+import javafx.beans.property.SimpleMapProperty;
+import javafx.collections.FXCollections;
+
+/**
+ * Base implementation of a timeseries loader.
+ * Holds the time window and aggregates the timeseries based on the pixels, whatever the storage of their timestamps.
+ */
+public abstract class AbstractTimeseriesLoader implements TimeseriesLoader {
+
+	protected ListProperty<Timeseries> timeseries;
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.dataloader.TimeseriesLoader#getTimeseries()
+	 */
+	@Override
+	public ListProperty<Timeseries> getTimeseries() {
+		return timeseries;
+	}
+
+	protected MapProperty<Timeseries, List<Double>> mapHistograms;
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.dataloader.TimeseriesLoader#getHistograms()
+	 */
+	@Override
+	public MapProperty<Timeseries, List<Double>> getHistograms() {
+		return mapHistograms;
+	}
+
+	/** Timestamp of the earliest event among the timeseries, extended as timestamps are appended */
+	protected volatile double startGlobal;
+	@Override
+	public double getStartGlobal() {
+		return startGlobal;
+	}
+
+	/** Timestamp of the latest event among the timeseries, extended as timestamps are appended */
+	protected volatile double endGlobal;
+	@Override
+	public double getEndGlobal() {
+		return endGlobal;
+	}
+
+	/** Timestamp of the earliest event of the time window currently visualized, set on the caller thread and read by the background updates */
+	protected volatile double startTimeWindow;
+	@Override
+	public double getStartTimeWindow() {
+		return startTimeWindow;
+	}
+
+	/** Timestamp of the latest event of the time window currently being visualized, set on the caller thread and read by the background updates */
+	protected volatile double endTimeWindow;
+	@Override
+	public double getEndTimeWindow() {
+		return endTimeWindow;
+	}
+
+	/** Number of time slices (or bins) to use to compute the histograms */
+	protected double nbTimeSlices;
+	@Override
+	public double getNbTimeSlices() {
+		return nbTimeSlices;
+	}
+	@Override
+	public void setNbTimeSlices(double nbTimeSlices) {
+		this.nbTimeSlices = nbTimeSlices;
+	}
+
+	/** Number of pixels to trim from left and right sides to have an accurate rendering on the borders */
+	protected int pixelsToTrim;
+	@Override
+	public void setPixelsToTrim(int pixelsToTrim) {
+		this.pixelsToTrim = pixelsToTrim;
+	}
+
+	/** Depth of the count pyramids used to locate the pixel bounds, 0 to search the timestamps directly. At most CountPyramid.MAX_DEPTH */
+	protected volatile int countPyramidDepth;
+	public int getCountPyramidDepth() {
+		return countPyramidDepth;
+	}
+	public void setCountPyramidDepth(int countPyramidDepth) {
+		CountPyramid.checkDepth(countPyramidDepth);
+		this.countPyramidDepth = countPyramidDepth;
+		pyramids.clear();
+	}
+
+	/**
+	 * Largest pyramid bucket duration, as a fraction of a time slice, in which the pixel bounds can be interpolated.
+	 * 0 gives exact histograms, otherwise the error of each bound is at most the number of events of the bucket it falls in.
+	 */
+	protected volatile double countPyramidTolerance;
+	public double getCountPyramidTolerance() {
+		return countPyramidTolerance;
+	}
+	public void setCountPyramidTolerance(double countPyramidTolerance) {
+		this.countPyramidTolerance = countPyramidTolerance;
+	}
+
+	/** Indicates whether the histograms are approximated with coarse bins, while the user is interacting */
+	protected volatile boolean preview;
+	public boolean isPreview() {
+		return preview;
+	}
+	@Override
+	public void setPreview(boolean preview) {
+		this.preview = preview;
+	}
+
+	/** Width of the coarse bins of the approximated histograms, in pixels */
+	protected int previewBinWidth;
+	public int getPreviewBinWidth() {
+		return previewBinWidth;
+	}
+	public void setPreviewBinWidth(int previewBinWidth) {
+		this.previewBinWidth = Math.max(1, previewBinWidth);
+	}
+
+	/** Smallest number of events of a timeseries for its bounds to be located in parallel, across pixel ranges */
+	protected long parallelThreshold;
+	public long getParallelThreshold() {
+		return parallelThreshold;
+	}
+	public void setParallelThreshold(long parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/** Smallest number of bounds located by a fork/join task */
+	protected static final int MIN_CHUNK_BOUNDS = 64;
+
+	/** Count pyramids of the timeseries, built on first use */
+	protected Map<Timeseries, CountPyramid> pyramids;
+
+	/** Grid of the pixel bounds of the current time window, null until the first update. Set on the caller thread and read by the background updates */
+	protected volatile PixelGrid grid;
+
+	/** Part of the pan displacement smaller than a pixel, not applied yet. Only accessed on the caller thread, along with the grid */
+	protected double panRemainder;
+
+	/** Indices of the events at the pixel bounds, with the grid they have been located on, for each timeseries */
+	protected Map<Timeseries, BoundIndices> mapBoundIndices;
+
+	/** Executor running the asynchronous updates */
+	protected Executor executor;
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/** Latest asynchronous update requested, the older ones are superseded */
+	protected AtomicReference<WindowRequest> latestRequest;
+
+	/** Largest number of time windows whose bounds are kept after being prefetched, for each timeseries */
+	protected static final int MAX_PREFETCHED_WINDOWS = 4;
+
+	/** Executor prefetching the bounds of the neighbouring time windows */
+	protected static ExecutorService prefetchExecutor;
+
+	/** Indicates whether the bounds of the neighbouring time windows are located in the background after each update */
+	protected boolean prefetchEnabled;
+	public boolean isPrefetchEnabled() {
+		return prefetchEnabled;
+	}
+	public void setPrefetchEnabled(boolean prefetchEnabled) {
+		this.prefetchEnabled = prefetchEnabled;
+	}
+
+	/** Bounds located in advance for the neighbouring time windows, for each timeseries */
+	protected Map<Timeseries, Deque<BoundIndices>> prefetchedBounds;
+
+	/** Incremented each time the time window changes, so that the prefetch of the previous neighbours stops */
+	protected AtomicLong prefetchGeneration;
+
+	/** Prefetch of the neighbours of the latest time window, completed once they are located or the time window changed */
+	protected volatile CompletableFuture<Void> prefetchFuture;
+	public CompletableFuture<Void> getPrefetchFuture() {
+		return prefetchFuture;
+	}
+
+	/** Number of bounds located to build the exact histograms, the other ones being reused from the previous or prefetched time windows */
+	protected AtomicLong nbLocatedBounds;
+	public long getNbLocatedBounds() {
+		return nbLocatedBounds.get();
+	}
+
+	/**
+	 * Constructor that initializes the loader with a list of timeseries
+	 *
+	 * @param timeseries List of timeseries to work with
+	 */
+	protected AbstractTimeseriesLoader(List<Timeseries> timeseries) {
+		this.timeseries = new SimpleListProperty<Timeseries>();
+		this.timeseries.setValue(FXCollections.observableArrayList(timeseries));
+		mapHistograms = new SimpleMapProperty<Timeseries, List<Double>>();
+		mapHistograms.setValue(FXCollections.observableHashMap());
+		countPyramidDepth = 0;
+		countPyramidTolerance = 0.;
+		preview = false;
+		previewBinWidth = 4;
+		parallelThreshold = 1 << 20;
+		pyramids = new ConcurrentHashMap<Timeseries, CountPyramid>();
+		mapBoundIndices = new ConcurrentHashMap<Timeseries, BoundIndices>();
+		latestRequest = new AtomicReference<WindowRequest>();
+		prefetchEnabled = false;
+		prefetchedBounds = new ConcurrentHashMap<Timeseries, Deque<BoundIndices>>();
+		prefetchGeneration = new AtomicLong();
+		prefetchFuture = CompletableFuture.completedFuture(null);
+		nbLocatedBounds = new AtomicLong();
+		executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "slickgraph-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		computeGlobalBounds();
+
+		startTimeWindow = startGlobal;
+		endTimeWindow = endGlobal;
+	}
+
+	/** Compute the timestamps of the earliest and latest events among the timeseries */
+	protected synchronized void computeGlobalBounds() {
+		// timestamps are sorted, so the bounds of each timeseries are its first and last timestamps
+		double start = Double.POSITIVE_INFINITY;
+		double end = Double.NEGATIVE_INFINITY;
+		for (Timeseries ts : timeseries) {
+			Timestamps timestamps = ts.getTimestamps();
+			if (!timestamps.isEmpty()) {
+				start = Math.min(start, timestamps.first());
+				end = Math.max(end, timestamps.last());
+			}
+		}
+		startGlobal = start;
+		endGlobal = end;
+	}
+
+	/**
+	 * Extend the timestamps of the earliest and latest events to the ones of a timeseries, e.g. once timestamps have been appended to it
+	 *
+	 * @param timestamps Timestamps of the timeseries
+	 */
+	protected synchronized void extendGlobalBounds(Timestamps timestamps) {
+		if (!timestamps.isEmpty()) {
+			startGlobal = Math.min(startGlobal, timestamps.first());
+			endGlobal = Math.max(endGlobal, timestamps.last());
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.dataloader.TimeseriesLoader#updateTimeWindow(double, double)
+	 */
+	@Override
+	public void updateTimeWindow(double start, double end) {
+		if (nbTimeSlices <= 0 || start > end || timeseries.isEmpty()) {
+			return;
+		}
+
+		cancelPendingRequest();
+		setGrid(gridFor(start, end));
+		publish(computeHistograms(grid, getBinWidth(), () -> false));
+	}
+
+	/**
+	 * Update the time window on the executor.
+	 * A request still pending or running when a new one arrives is cancelled, the latest request is always computed.
+	 *
+	 * @param start Start timestamp of the new time window
+	 * @param end End timestamp of the new time window
+	 * @return Histograms of the new time window, cancelled if superseded by a newer request
+	 */
+	@Override
+	public CompletableFuture<Map<Timeseries, List<Double>>> updateTimeWindowAsync(double start, double end) {
+		if (nbTimeSlices <= 0 || start > end || timeseries.isEmpty()) {
+			return CompletableFuture.completedFuture(new HashMap<Timeseries, List<Double>>(mapHistograms));
+		}
+
+		setGrid(gridFor(start, end));
+		return submit(grid);
+	}
+
+	/**
+	 * Perform a pan by whole pixels, reusing the bounds already located.
+	 * The part of the displacement smaller than a pixel is carried forward to the next pan,
+	 * so that the histograms are exactly the ones a full update of the new time window would give.
+	 *
+	 * @param deltaX Horizontal displacement of the mouse cursor
+	 */
+	@Override
+	public void pan(double deltaX) {
+		if (!isPannable()) {
+			TimeseriesLoader.super.pan(deltaX);
+			return;
+		}
+
+		cancelPendingRequest();
+		if (panGrid(deltaX)) {
+			publish(computeHistograms(grid, getBinWidth(), () -> false));
+		}
+	}
+
+	/**
+	 * Perform a pan by whole pixels on the executor
+	 *
+	 * @param deltaX Horizontal displacement of the mouse cursor
+	 * @return Histograms of the new time window, cancelled if superseded by a newer request
+	 * @see #pan(double)
+	 */
+	@Override
+	public CompletableFuture<Map<Timeseries, List<Double>>> panAsync(double deltaX) {
+		if (!isPannable()) {
+			return TimeseriesLoader.super.panAsync(deltaX);
+		}
+
+		return panGrid(deltaX) ? submit(grid) : CompletableFuture.completedFuture(new HashMap<Timeseries, List<Double>>(mapHistograms));
+	}
+
+	/** @return True if the current grid can be shifted for a pan */
+	protected boolean isPannable() {
+		return grid != null && nbTimeSlices > 0 && !timeseries.isEmpty() && nbTimeSlices == grid.getNbTimeSlices() && pixelsToTrim == grid.getPixelsToTrim();
+	}
+
+	/**
+	 * Shift the grid by the whole pixels of the displacement, carrying the remainder forward
+	 *
+	 * @param deltaX Horizontal displacement of the mouse cursor
+	 * @return True if the time window moved
+	 */
+	protected boolean panGrid(double deltaX) {
+		panRemainder += deltaX;
+		long shift = (long) panRemainder;
+		if (shift == 0) {
+			return false;
+		}
+		panRemainder -= shift;
+
+		PixelGrid shifted = grid.shift(shift);
+		grid = shifted;
+		prefetchGeneration.incrementAndGet();
+		startTimeWindow = shifted.getStart();
+		endTimeWindow = shifted.getEnd();
+
+		return true;
+	}
+
+	/**
+	 * Return the grid of a time window.
+	 * The current grid is kept when refreshing the current time window, so that the pixel bounds do not move.
+	 *
+	 * @param start Start timestamp of the time window
+	 * @param end End timestamp of the time window
+	 * @return Grid of the time window
+	 */
+	protected PixelGrid gridFor(double start, double end) {
+		if (grid != null && start == grid.getStart() && end == grid.getEnd() && nbTimeSlices == grid.getNbTimeSlices()) {
+			return new PixelGrid(grid.origin, grid.offset, grid.sliceDuration, start, end, nbTimeSlices, pixelsToTrim);
+		}
+
+		return new PixelGrid(start, end, nbTimeSlices, pixelsToTrim);
+	}
+
+	/**
+	 * Set the grid of the current time window
+	 *
+	 * @param grid New grid
+	 */
+	protected void setGrid(PixelGrid grid) {
+		if (this.grid == null || !grid.isAlignedWith(this.grid)) {
+			panRemainder = 0.;
+		}
+		this.grid = grid;
+		startTimeWindow = grid.getStart();
+		endTimeWindow = grid.getEnd();
+		prefetchGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Return the grid of the time window a zoom would give, as computed by {@link TimeseriesLoader#zoom(double)}
+	 *
+	 * @param grid Grid of the current time window
+	 * @param z Y-delta of the zoom
+	 * @return Grid of the zoomed time window
+	 */
+	protected PixelGrid zoomedGrid(PixelGrid grid, double z) {
+		double start = grid.getStart();
+		double end = grid.getEnd();
+
+		double delta = TimeseriesLoader.zoomDelta(start, end, grid.getNbTimeSlices(), z);
+		if (z > 0) {
+			start += delta;
+			end -= delta;
+		} else {
+			start -= delta;
+			end += delta;
+		}
+
+		return new PixelGrid(start, end, grid.getNbTimeSlices(), grid.getPixelsToTrim());
+	}
+
+	/**
+	 * Submit the computation of the histograms of a grid to the executor, superseding the previous request
+	 *
+	 * @param grid Grid of the time window
+	 * @return Histograms of the time window, cancelled if superseded by a newer request
+	 */
+	protected CompletableFuture<Map<Timeseries, List<Double>>> submit(PixelGrid grid) {
+		WindowRequest request = new WindowRequest(grid, getBinWidth());
+		WindowRequest previous = latestRequest.getAndSet(request);
+		if (previous != null) {
+			previous.future.cancel(false);
+		}
+
+		executor.execute(() -> {
+			if (request.isSuperseded()) {
+				return;
+			}
+
+			try {
+				Map<Timeseries, List<Double>> histograms = computeHistograms(request.grid, request.binWidth, request::isSuperseded);
+				synchronized (mapHistograms) {
+					if (!request.isSuperseded()) {
+						mapHistograms.getValue().putAll(histograms);
+						prefetch(request.grid);
+					}
+				}
+				request.future.complete(histograms);
+			} catch (CancellationException e) {
+				request.future.cancel(false);
+			} catch (Throwable e) {
+				request.future.completeExceptionally(e);
+			}
+		});
+
+		return request.future;
+	}
+
+	/**
+	 * Update the histogram of a timeseries on the executor once timestamps have been appended to it.
+	 * Only the bins on the right edge of the time window, whose bounds were after the last event, are computed again.
+	 * While a time window is being computed, the update is done once it completes, as the computation may have missed the new events.
+	 *
+	 * @param timeseries Timeseries the timestamps have been appended to
+	 * @param from Index of the first timestamp appended
+	 * @return Histogram of the timeseries, empty if it did not change
+	 */
+	@Override
+	public CompletableFuture<Map<Timeseries, List<Double>>> appendAsync(Timeseries timeseries, long from) {
+		extendGlobalBounds(timeseries.getTimestamps());
+
+		WindowRequest pending = latestRequest.get();
+		if (pending != null && !pending.future.isDone()) {
+			return pending.future.handle((h, e) -> null).thenCompose(v -> appendAsync(timeseries, from));
+		}
+
+		CompletableFuture<Map<Timeseries, List<Double>>> future = new CompletableFuture<Map<Timeseries, List<Double>>>();
+		PixelGrid grid = this.grid;
+		if (grid == null || nbTimeSlices <= 0) {
+			future.complete(new HashMap<Timeseries, List<Double>>());
+			return future;
+		}
+
+		executor.execute(() -> {
+			try {
+				Map<Timeseries, List<Double>> histograms = new HashMap<Timeseries, List<Double>>();
+				synchronized (mapHistograms) {
+					// a time window requested meanwhile replaces the histograms
+					if (this.grid == grid && latestRequest.get() == pending) {
+						List<Double> histogram = appendHistogram(timeseries, grid, from);
+						if (histogram != null) {
+							mapHistograms.getValue().put(timeseries, histogram);
+							histograms.put(timeseries, histogram);
+						}
+					}
+				}
+				future.complete(histograms);
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Compute the histogram of a timeseries once timestamps have been appended to it.
+	 * If the bounds of the grid are known, the ones before the first event appended keep their index, only the following ones are located again.
+	 *
+	 * @param timeseries Timeseries the timestamps have been appended to
+	 * @param grid Grid of the time window
+	 * @param from Index of the first timestamp appended
+	 * @return Histogram of the timeseries, null if it did not change
+	 */
+	protected List<Double> appendHistogram(Timeseries timeseries, PixelGrid grid, long from) {
+		Timestamps timestamps = timeseries.getTimestamps();
+		BoundIndices known = mapBoundIndices.get(timeseries);
+		List<Double> previous = mapHistograms.get(timeseries);
+		if (getBinWidth() > 1 || known == null || known.grid != grid || !known.isLocatedIn(timestamps) || known.tolerance > getBoundsTolerance() ||
+				previous == null || previous.size() != known.indices.length - 1) {
+			return buildHistogram(timeseries, grid, getBinWidth(), getTotalSize());
+		}
+
+		// the bounds after the previous last event are a suffix, the appended events being after it
+		BoundIndices bounds = new BoundIndices(grid, timestamps, known.indices.clone(), known.tolerance);
+		long[] boundIndices = bounds.indices;
+		int first = boundIndices.length;
+		while (first > 0 && boundIndices[first - 1] >= Math.min(from, known.size)) {
+			first--;
+		}
+		if (first == boundIndices.length) {
+			return null;
+		}
+		timestamps.lowerBounds(grid.getBounds(), boundIndices, first, boundIndices.length);
+		mapBoundIndices.put(timeseries, bounds);
+
+		double[] histogram = HistogramList.values(previous).clone();
+		for (int i = Math.max(0, first - 1); i < histogram.length; i++) {
+			histogram[i] = grid.getHistogramValue(boundIndices[i + 1] - boundIndices[i]);
+		}
+
+		return new HistogramList(histogram);
+	}
+
+	/** Cancel the asynchronous request pending or running, if any */
+	protected void cancelPendingRequest() {
+		WindowRequest previous = latestRequest.getAndSet(null);
+		if (previous != null) {
+			previous.future.cancel(false);
+		}
+	}
+
+	/**
+	 * Publish new histograms
+	 *
+	 * @param histograms Histograms of the current time window
+	 */
+	protected void publish(Map<Timeseries, List<Double>> histograms) {
+		synchronized (mapHistograms) {
+			mapHistograms.getValue().putAll(histograms);
+		}
+		prefetch(grid);
+	}
+
+	/** @return Width of the bins of the histograms to compute, in pixels */
+	protected int getBinWidth() {
+		return preview ? previewBinWidth : 1;
+	}
+
+	/**
+	 * Aggregate all the timeseries on a grid
+	 *
+	 * @param grid Grid of the time window
+	 * @param binWidth Width of the bins, in pixels. 1 for exact histograms
+	 * @param cancelled Tells whether the computation is no longer needed
+	 * @return Histograms of the timeseries
+	 * @throws CancellationException If the computation has been cancelled
+	 */
+	protected Map<Timeseries, List<Double>> computeHistograms(PixelGrid grid, int binWidth, BooleanSupplier cancelled) {
+		Map<Timeseries, List<Double>> histograms = new ConcurrentHashMap<Timeseries, List<Double>>();
+		long totalSize = getTotalSize();
+		timeseries.parallelStream().forEach(ts -> {
+			if (cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+			histograms.put(ts, buildHistogram(ts, grid, binWidth, totalSize));
+		});
+
+		return histograms;
+	}
+
+	/**
+	 * Compute the aggregation of a timeseries based on the pixels.
+	 * If the bounds of a previous time window aligned on the same grid are known, only the newly exposed bounds are located.
+	 *
+	 * @param timeseries Timeseries to aggregate
+	 * @param grid Grid of the time window
+	 * @param binWidth Width of the bins, in pixels. 1 for exact histograms
+	 * @param totalSize Number of events of all the timeseries, sharing the cores among them
+	 * @return Histograms containing the aggregated timeseries
+	 */
+	protected List<Double> buildHistogram(Timeseries timeseries, PixelGrid grid, int binWidth, long totalSize) {
+		double[] pixelBounds = grid.getBounds();
+		int nbBounds = pixelBounds.length;
+		BoundIndices bounds = new BoundIndices(grid, timeseries.getTimestamps(), new long[nbBounds], getBoundsTolerance());
+		long[] boundIndices = bounds.indices;
+
+		// reuse the bounds already located on aligned grids: the previous time window and the prefetched ones
+		dropOutdatedBounds(timeseries, bounds.timestamps);
+		BitSet located = new BitSet(nbBounds);
+		reuseBounds(mapBoundIndices.get(timeseries), bounds, located);
+		Deque<BoundIndices> prefetched = prefetchedBounds.get(timeseries);
+		if (prefetched != null) {
+			prefetched.forEach(known -> reuseBounds(known, bounds, located));
+		}
+
+		if (binWidth > 1) {
+			return buildCoarseHistogram(timeseries, bounds, binWidth, located);
+		}
+
+		// locate the other ones, split across pixel ranges for the large timeseries
+		nbLocatedBounds.addAndGet(nbBounds - located.cardinality());
+		int nbChunks = getNbChunks(timeseries, totalSize);
+		if (nbChunks > 1) {
+			new LocateTask(timeseries, bounds, pixelBounds, located, 0, nbBounds, Math.max(MIN_CHUNK_BOUNDS, nbBounds / nbChunks)).invoke();
+		} else {
+			locateMissingBounds(timeseries, bounds, pixelBounds, located, 0, nbBounds);
+		}
+		mapBoundIndices.put(timeseries, bounds);
+
+		// same values as PixelGrid.getHistogramValue
+		double[] histogram = new double[Math.max(0, nbBounds - 1)];
+		ArrayKernels.get().differences(boundIndices, grid.getEnd() - grid.getStart(), grid.getNbTimeSlices(), histogram);
+
+		return new HistogramList(histogram);
+	}
+
+	/**
+	 * Return the number of chunks the bounds of a timeseries are split into to be located in parallel.
+	 * The cores are shared among the timeseries according to their number of events:
+	 * many timeseries are aggregated in parallel across timeseries only, a few large ones are also split across pixel ranges.
+	 *
+	 * @param timeseries Timeseries to aggregate
+	 * @param totalSize Number of events of all the timeseries, computed once for all of them
+	 * @return Number of chunks, 1 to locate the bounds sequentially
+	 */
+	protected int getNbChunks(Timeseries timeseries, long totalSize) {
+		long size = timeseries.getTimestamps().size();
+		if (size < parallelThreshold || size == 0) {
+			return 1;
+		}
+
+		return (int) Math.ceil(ForkJoinPool.getCommonPoolParallelism() * (double) size / Math.max(size, totalSize));
+	}
+
+	/** @return Number of events of all the timeseries */
+	protected long getTotalSize() {
+		long totalSize = 0;
+		for (Timeseries ts : timeseries) {
+			totalSize += ts.getTimestamps().size();
+		}
+
+		return totalSize;
+	}
+
+	/**
+	 * Locate the bounds of a range that are not located yet
+	 *
+	 * @param timeseries Timeseries to search in
+	 * @param bounds Bounds of the time window, receiving the index of each bound
+	 * @param pixelBounds Timestamps at the pixel bounds
+	 * @param located Set of the bounds already located, left unchanged
+	 * @param from Index of the first bound of the range
+	 * @param to Index after the last bound of the range
+	 */
+	protected void locateMissingBounds(Timeseries timeseries, BoundIndices bounds, double[] pixelBounds, BitSet located, int from, int to) {
+		int start = located.nextClearBit(from);
+		while (start < to) {
+			int end = located.nextSetBit(start);
+			end = end < 0 || end > to ? to : end;
+			locateBounds(timeseries, bounds, pixelBounds, start, end);
+			start = located.nextClearBit(end);
+		}
+	}
+
+	/**
+	 * Compute an approximated histogram whose bins span several pixels, the events of a bin being spread evenly over its pixels.
+	 * The bins are aligned on the grid, so that they do not move while panning. Only their bounds are located.
+	 *
+	 * @param timeseries Timeseries to aggregate
+	 * @param bounds Bounds of the time window, the ones already located being set
+	 * @param binWidth Width of the bins, in pixels
+	 * @param located Set of the bounds already located
+	 * @return Histogram with one value per pixel
+	 */
+	protected List<Double> buildCoarseHistogram(Timeseries timeseries, BoundIndices bounds, int binWidth, BitSet located) {
+		PixelGrid grid = bounds.grid;
+		long[] boundIndices = bounds.indices;
+		double[] pixelBounds = grid.getBounds();
+		int nbBounds = pixelBounds.length;
+		double[] histogram = new double[Math.max(0, nbBounds - 1)];
+
+		int from = 0;
+		int to = (int) Math.floorMod(-grid.offset, (long) binWidth);
+		to = to == 0 ? Math.min(binWidth, nbBounds - 1) : Math.min(to, nbBounds - 1);
+		if (!located.get(0)) {
+			locateBounds(timeseries, bounds, pixelBounds, 0, 1);
+		}
+		while (from < nbBounds - 1) {
+			if (!located.get(to)) {
+				locateBounds(timeseries, bounds, pixelBounds, to, to + 1);
+			}
+
+			double value = grid.getHistogramValue(boundIndices[to] - boundIndices[from]) / (to - from);
+			Arrays.fill(histogram, from, to, value);
+
+			from = to;
+			to = Math.min(to + binWidth, nbBounds - 1);
+		}
+
+		return new HistogramList(histogram);
+	}
+
+	/**
+	 * Drop the bounds located before the timestamps of a timeseries were replaced
+	 *
+	 * @param timeseries Timeseries
+	 * @param timestamps Current timestamps of the timeseries
+	 */
+	protected void dropOutdatedBounds(Timeseries timeseries, Timestamps timestamps) {
+		BoundIndices known = mapBoundIndices.get(timeseries);
+		if (known != null && !known.isLocatedIn(timestamps)) {
+			mapBoundIndices.remove(timeseries, known);
+		}
+		Deque<BoundIndices> prefetched = prefetchedBounds.get(timeseries);
+		if (prefetched != null) {
+			prefetched.removeIf(b -> !b.isLocatedIn(timestamps));
+		}
+	}
+
+	/**
+	 * Copy the bounds already located on a grid aligned with the one of the time window.
+	 * The bounds located after the last event are not copied if events have been appended since,
+	 * and none is copied if the timestamps have been replaced since or if they have been interpolated with a larger tolerance.
+	 *
+	 * @param known Bounds already located, may be null
+	 * @param bounds Bounds of the time window being located
+	 * @param located Set of the bounds of the time window already located, updated with the copied ones
+	 */
+	protected void reuseBounds(BoundIndices known, BoundIndices bounds, BitSet located) {
+		PixelGrid grid = bounds.grid;
+		long[] boundIndices = bounds.indices;
+		if (known == null || !grid.isAlignedWith(known.grid) || known.timestamps != bounds.timestamps || known.modificationCount != bounds.modificationCount ||
+				known.tolerance > bounds.tolerance) {
+			return;
+		}
+
+		long shift = grid.shiftFrom(known.grid);
+		if (Math.abs(shift) >= Math.max(boundIndices.length, known.indices.length)) {
+			return;
+		}
+
+		int from = (int) Math.max(0, -shift);
+		int to = (int) Math.min(boundIndices.length, known.indices.length - shift);
+		while (known.size != bounds.size && to > from && known.indices[(int) (to - 1 + shift)] >= known.size) {
+			to--;
+		}
+		if (from < to) {
+			System.arraycopy(known.indices, (int) (from + shift), boundIndices, from, to - from);
+			located.set(from, to);
+		}
+	}
+
+	/**
+	 * Locate in the background the bounds of the time windows likely to be requested next:
+	 * one screen on the left and on the right, one zoom step in and out
+	 *
+	 * @param grid Grid of the current time window
+	 */
+	protected void prefetch(PixelGrid grid) {
+		long generation = prefetchGeneration.incrementAndGet();
+		if (!prefetchEnabled) {
+			prefetchFuture = CompletableFuture.completedFuture(null);
+			return;
+		}
+
+		long screen = (long) grid.getNbTimeSlices();
+		List<PixelGrid> neighbours = Arrays.asList(grid.shift(-screen), grid.shift(screen), zoomedGrid(grid, 1.), zoomedGrid(grid, -1.));
+		List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+		for (PixelGrid neighbour : neighbours) {
+			if (neighbour.getStart() > neighbour.getEnd()) {
+				continue;
+			}
+
+			futures.add(CompletableFuture.runAsync(() -> {
+				double[] pixelBounds = neighbour.getBounds();
+				for (Timeseries ts : timeseries) {
+					// the time window changed, these neighbours are not likely anymore
+					if (prefetchGeneration.get() != generation) {
+						return;
+					}
+
+					BoundIndices bounds = new BoundIndices(neighbour, ts.getTimestamps(), new long[pixelBounds.length], getBoundsTolerance());
+					locateBounds(ts, bounds, pixelBounds, 0, bounds.indices.length);
+
+					Deque<BoundIndices> prefetched = prefetchedBounds.computeIfAbsent(ts, t -> new ConcurrentLinkedDeque<BoundIndices>());
+					prefetched.addLast(bounds);
+					while (prefetched.size() > MAX_PREFETCHED_WINDOWS) {
+						prefetched.pollFirst();
+					}
+				}
+			}, getPrefetchExecutor()));
+		}
+		prefetchFuture = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+
+	/** @return Executor shared by all the loaders to prefetch on the idle cores */
+	protected static synchronized ExecutorService getPrefetchExecutor() {
+		if (prefetchExecutor == null) {
+			int nbThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			prefetchExecutor = Executors.newFixedThreadPool(nbThreads, r -> {
+				Thread thread = new Thread(r, "slickgraph-prefetch");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+		}
+
+		return prefetchExecutor;
+	}
+
+	/**
+	 * Compute the indices of the first events at or after a range of pixel bounds
+	 *
+	 * @param timeseries Timeseries to search in
+	 * @param bounds Bounds of the time window, receiving the index of each bound
+	 * @param pixelBounds Timestamps at the pixel bounds
+	 * @param from Index of the first bound to locate
+	 * @param to Index after the last bound to locate
+	 */
+	protected void locateBounds(Timeseries timeseries, BoundIndices bounds, double[] pixelBounds, int from, int to) {
+		Timestamps timestamps = bounds.timestamps;
+
+		int depth = countPyramidDepth;
+		if (depth > 0) {
+			// built once even when several chunks of the bounds need it at the same time
+			CountPyramid pyramid = pyramids.compute(timeseries, (ts, p) -> p == null || !p.isBuiltFrom(timestamps) ? new CountPyramid(timestamps, depth) : p);
+			pyramid.locateBounds(pixelBounds, bounds.indices, from, to, bounds.grid.getSliceDuration(), bounds.tolerance);
+			return;
+		}
+
+		timestamps.lowerBounds(pixelBounds, bounds.indices, from, to);
+	}
+
+	/** @return Tolerance the pixel bounds are currently located with, 0 if they are exact */
+	protected double getBoundsTolerance() {
+		return countPyramidDepth > 0 ? countPyramidTolerance : 0.;
+	}
+
+	/** Indices of the events at the pixel bounds of a grid */
+	protected static class BoundIndices {
+
+		protected final PixelGrid grid;
+
+		protected final long[] indices;
+
+		/** Timestamps the bounds are located in */
+		protected final Timestamps timestamps;
+
+		/** Modification count of the timestamps before the bounds were located, the bounds are outdated once it changes */
+		protected final long modificationCount;
+
+		/** Number of events of the timeseries before the bounds were located, the bounds at this index move when events are appended */
+		protected final long size;
+
+		/** Count pyramid tolerance the bounds are interpolated with, 0 if they are exact */
+		protected final double tolerance;
+
+		/**
+		 * Constructor to call before locating the bounds, so that a concurrent change of the timestamps outdates them
+		 *
+		 * @param grid Grid of the time window
+		 * @param timestamps Timestamps the bounds are located in
+		 * @param indices Array receiving the index of each bound
+		 * @param tolerance Count pyramid tolerance the bounds are interpolated with, 0 if they are exact
+		 */
+		protected BoundIndices(PixelGrid grid, Timestamps timestamps, long[] indices, double tolerance) {
+			this.grid = grid;
+			this.timestamps = timestamps;
+			modificationCount = timestamps.getModificationCount();
+			size = timestamps.size();
+			this.indices = indices;
+			this.tolerance = tolerance;
+		}
+
+		/**
+		 * @param timestamps Current timestamps of the timeseries
+		 * @return True if the bounds have been located in these timestamps and they have not been replaced since
+		 */
+		protected boolean isLocatedIn(Timestamps timestamps) {
+			return this.timestamps == timestamps && modificationCount == timestamps.getModificationCount();
+		}
+
+	}
+
+	/** Location of a range of bounds, split in halves to be located in parallel */
+	protected class LocateTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final Timeseries timeseries;
+
+		protected final BoundIndices bounds;
+
+		protected final double[] pixelBounds;
+
+		protected final BitSet located;
+
+		protected final int from;
+
+		protected final int to;
+
+		protected final int chunkSize;
+
+		protected LocateTask(Timeseries timeseries, BoundIndices bounds, double[] pixelBounds, BitSet located, int from, int to, int chunkSize) {
+			this.timeseries = timeseries;
+			this.bounds = bounds;
+			this.pixelBounds = pixelBounds;
+			this.located = located;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunkSize) {
+				locateMissingBounds(timeseries, bounds, pixelBounds, located, from, to);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new LocateTask(timeseries, bounds, pixelBounds, located, from, middle, chunkSize),
+					new LocateTask(timeseries, bounds, pixelBounds, located, middle, to, chunkSize));
+		}
+
+	}
+
+	/** Asynchronous request of a time window */
+	protected class WindowRequest {
+
+		protected final PixelGrid grid;
+
+		protected final int binWidth;
+
+		protected final CompletableFuture<Map<Timeseries, List<Double>>> future;
+
+		protected WindowRequest(PixelGrid grid, int binWidth) {
+			this.grid = grid;
+			this.binWidth = binWidth;
+			future = new CompletableFuture<Map<Timeseries, List<Double>>>();
+		}
+
+		/** @return True if a newer request has been submitted or the request has been cancelled */
+		protected boolean isSuperseded() {
+			return latestRequest.get() != this || future.isCancelled();
+		}
+
+	}
+
+}
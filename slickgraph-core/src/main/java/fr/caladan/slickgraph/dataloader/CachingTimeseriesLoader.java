@@ -0,0 +1,310 @@
+package fr.caladan.slickgraph.dataloader;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import fr.caladan.slickgraph.Timeseries;
+import fr.caladan.slickgraph.dataloader.HistogramCache.DataVersion;
+import javafx.beans.property.ListProperty;
+import javafx.beans.property.MapProperty;
+import javafx.beans.property.SimpleMapProperty;
+import javafx.collections.FXCollections;
+
+/**
+ * Timeseries loader keeping the histograms computed by another loader in a bounded cache.
+ * Going back to a time window already visualized is then a lookup instead of a new aggregation.
+ */
+public class CachingTimeseriesLoader implements TimeseriesLoader {
+
+	/** Loader computing the histograms missing from the cache */
+	protected TimeseriesLoader loader;
+	public TimeseriesLoader getLoader() {
+		return loader;
+	}
+
+	/** Cache of the histograms */
+	protected HistogramCache cache;
+	public HistogramCache getCache() {
+		return cache;
+	}
+
+	/** Histograms of the current time window */
+	protected MapProperty<Timeseries, List<Double>> mapHistograms;
+	@Override
+	public MapProperty<Timeseries, List<Double>> getHistograms() {
+		return mapHistograms;
+	}
+
+	/** Histograms being computed by the wrapped loader for the latest asynchronous request, if any */
+	protected CompletableFuture<Map<Timeseries, List<Double>>> pendingHistograms;
+
+	/** Latest asynchronous request of the wrapped loader, cancelled along with the pending histograms so that it stops computing them */
+	protected CompletableFuture<Map<Timeseries, List<Double>>> pendingRequest;
+
+	/** Timestamp of the earliest event of the time window currently visualized */
+	protected double startTimeWindow;
+	@Override
+	public double getStartTimeWindow() {
+		return startTimeWindow;
+	}
+
+	/** Timestamp of the latest event of the time window currently being visualized */
+	protected double endTimeWindow;
+	@Override
+	public double getEndTimeWindow() {
+		return endTimeWindow;
+	}
+
+	/** Number of pixels to trim from left and right sides, part of the cache keys */
+	protected int pixelsToTrim;
+	@Override
+	public void setPixelsToTrim(int pixelsToTrim) {
+		this.pixelsToTrim = pixelsToTrim;
+		loader.setPixelsToTrim(pixelsToTrim);
+	}
+
+	/** Indicates whether the wrapped loader approximates the histograms, which are then not cached */
+	protected boolean preview;
+	@Override
+	public void setPreview(boolean preview) {
+		this.preview = preview;
+		loader.setPreview(preview);
+	}
+
+	@Override
+	public double getNbTimeSlices() {
+		return loader.getNbTimeSlices();
+	}
+	@Override
+	public void setNbTimeSlices(double nbTimeSlices) {
+		loader.setNbTimeSlices(nbTimeSlices);
+	}
+
+	@Override
+	public double getStartGlobal() {
+		return loader.getStartGlobal();
+	}
+
+	@Override
+	public double getEndGlobal() {
+		return loader.getEndGlobal();
+	}
+
+	@Override
+	public ListProperty<Timeseries> getTimeseries() {
+		return loader.getTimeseries();
+	}
+
+	/**
+	 * Public constructor that wraps a loader
+	 *
+	 * @param loader Loader computing the histograms
+	 * @param capacity Largest estimated memory used by the cache, in bytes
+	 */
+	public CachingTimeseriesLoader(TimeseriesLoader loader, long capacity) {
+		this(loader, new HistogramCache(capacity));
+	}
+
+	/**
+	 * Public constructor that wraps a loader and stores its histograms in a given cache
+	 *
+	 * @param loader Loader computing the histograms
+	 * @param cache Cache of the histograms
+	 */
+	public CachingTimeseriesLoader(TimeseriesLoader loader, HistogramCache cache) {
+		this.loader = loader;
+		this.cache = cache;
+		preview = false;
+		mapHistograms = new SimpleMapProperty<Timeseries, List<Double>>();
+		mapHistograms.setValue(FXCollections.observableHashMap());
+		startTimeWindow = loader.getStartTimeWindow();
+		endTimeWindow = loader.getEndTimeWindow();
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.dataloader.TimeseriesLoader#updateTimeWindow(double, double)
+	 */
+	@Override
+	public void updateTimeWindow(double start, double end) {
+		if (lookup(start, end)) {
+			return;
+		}
+
+		Map<Timeseries, DataVersion> versions = HistogramCache.versionsOf(getTimeseries());
+		loader.updateTimeWindow(start, end);
+		store(loader.getHistograms(), versions);
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.dataloader.TimeseriesLoader#updateTimeWindowAsync(double, double)
+	 */
+	@Override
+	public CompletableFuture<Map<Timeseries, List<Double>>> updateTimeWindowAsync(double start, double end) {
+		if (lookup(start, end)) {
+			return CompletableFuture.completedFuture(new HashMap<Timeseries, List<Double>>(mapHistograms));
+		}
+
+		Map<Timeseries, DataVersion> versions = HistogramCache.versionsOf(getTimeseries());
+		return store(loader.updateTimeWindowAsync(start, end), versions);
+	}
+
+	/**
+	 * Perform a pan.
+	 * When the wrapped loader is on the current time window, it performs the pan itself so that it can reuse its previous work.
+	 *
+	 * @param deltaX Horizontal displacement of the mouse cursor
+	 */
+	@Override
+	public void pan(double deltaX) {
+		if (!isLoaderInSync()) {
+			TimeseriesLoader.super.pan(deltaX);
+			return;
+		}
+
+		cancelPending();
+		Map<Timeseries, DataVersion> versions = HistogramCache.versionsOf(getTimeseries());
+		loader.pan(deltaX);
+		store(loader.getHistograms(), versions);
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.dataloader.TimeseriesLoader#panAsync(double)
+	 */
+	@Override
+	public CompletableFuture<Map<Timeseries, List<Double>>> panAsync(double deltaX) {
+		if (!isLoaderInSync()) {
+			return TimeseriesLoader.super.panAsync(deltaX);
+		}
+
+		cancelPending();
+		Map<Timeseries, DataVersion> versions = HistogramCache.versionsOf(getTimeseries());
+		return store(loader.panAsync(deltaX), versions);
+	}
+
+	/**
+	 * Update the histograms of the current time window once timestamps have been appended to a timeseries.
+	 * The histograms cached for the timeseries do not count the new events, they are removed from the cache.
+	 *
+	 * @param timeseries Timeseries the timestamps have been appended to
+	 * @param from Index of the first timestamp appended
+	 * @return Histograms that changed
+	 */
+	@Override
+	public CompletableFuture<Map<Timeseries, List<Double>>> appendAsync(Timeseries timeseries, long from) {
+		cache.invalidate(timeseries);
+		if (!isLoaderInSync()) {
+			return TimeseriesLoader.super.appendAsync(timeseries, from);
+		}
+
+		PixelGrid grid = getGrid();
+		boolean approximated = preview;
+		Map<Timeseries, DataVersion> versions = HistogramCache.versionsOf(getTimeseries());
+		return loader.appendAsync(timeseries, from).thenApply(h -> {
+			if (!approximated) {
+				cache.putAll(getTimeseries(), h, grid, versions);
+			}
+			synchronized (mapHistograms) {
+				mapHistograms.getValue().putAll(h);
+			}
+			return h;
+		});
+	}
+
+	/** @return True if the wrapped loader is on the current time window */
+	protected boolean isLoaderInSync() {
+		return loader.getStartTimeWindow() == startTimeWindow && loader.getEndTimeWindow() == endTimeWindow;
+	}
+
+	/**
+	 * Set the current time window and look its histograms up in the cache
+	 *
+	 * @param start Start timestamp of the time window
+	 * @param end End timestamp of the time window
+	 * @return True if all the histograms were cached
+	 */
+	protected boolean lookup(double start, double end) {
+		if (getNbTimeSlices() <= 0 || start > end) {
+			return false;
+		}
+
+		// a newer time window has been requested, the pending one will not be shown
+		cancelPending();
+
+		startTimeWindow = start;
+		endTimeWindow = end;
+
+		Map<Timeseries, List<Double>> histograms = cache.getAll(getTimeseries(), getGrid());
+		if (histograms == null) {
+			return false;
+		}
+
+		synchronized (mapHistograms) {
+			mapHistograms.getValue().putAll(histograms);
+		}
+		return true;
+	}
+
+	/** Cancel the latest asynchronous request, both its histograms and the computation of the wrapped loader */
+	protected void cancelPending() {
+		if (pendingHistograms != null) {
+			pendingHistograms.cancel(false);
+			pendingHistograms = null;
+		}
+		if (pendingRequest != null) {
+			pendingRequest.cancel(false);
+			pendingRequest = null;
+		}
+	}
+
+	/**
+	 * Store the histograms computed by the wrapped loader for its current time window, which becomes the current one
+	 *
+	 * @param histograms Histograms computed by the wrapped loader
+	 * @param versions Version of the data of the timeseries taken before the histograms were computed
+	 */
+	protected void store(Map<Timeseries, List<Double>> histograms, Map<Timeseries, DataVersion> versions) {
+		startTimeWindow = loader.getStartTimeWindow();
+		endTimeWindow = loader.getEndTimeWindow();
+		if (!preview) {
+			cache.putAll(getTimeseries(), histograms, getGrid(), versions);
+		}
+		synchronized (mapHistograms) {
+			mapHistograms.getValue().putAll(histograms);
+		}
+	}
+
+	/**
+	 * Store the histograms being computed by the wrapped loader once they are available
+	 *
+	 * @param histograms Histograms being computed by the wrapped loader
+	 * @param versions Version of the data of the timeseries taken before the request
+	 * @return Histograms once stored
+	 */
+	protected CompletableFuture<Map<Timeseries, List<Double>>> store(CompletableFuture<Map<Timeseries, List<Double>>> histograms, Map<Timeseries, DataVersion> versions) {
+		startTimeWindow = loader.getStartTimeWindow();
+		endTimeWindow = loader.getEndTimeWindow();
+		PixelGrid grid = getGrid();
+		boolean approximated = preview;
+
+		pendingRequest = histograms;
+		pendingHistograms = histograms.thenApply(h -> {
+			if (!approximated) {
+				cache.putAll(getTimeseries(), h, grid, versions);
+			}
+			synchronized (mapHistograms) {
+				mapHistograms.getValue().putAll(h);
+			}
+			return h;
+		});
+
+		return pendingHistograms;
+	}
+
+	/** @return Grid of the current time window, used as the cache key */
+	protected PixelGrid getGrid() {
+		return new PixelGrid(startTimeWindow, endTimeWindow, getNbTimeSlices(), pixelsToTrim);
+	}
+
+}
@@ -0,0 +1,206 @@
+package fr.caladan.slickgraph.dataloader;
+
+import fr.caladan.slickgraph.Timestamps;
+
+/**
+ * Multi-resolution count pyramid of a timeseries.
+ * Level l splits the time range of the timeseries into 2^l buckets of equal duration and stores the number of events before each bucket boundary.
+ * The boundaries of a level are also boundaries of all the finer levels, since the bucket durations only differ by powers of two.
+ *
+ * The number of events before a timestamp lies between the cumulative counts of the two boundaries surrounding it.
+ * It is then either searched exactly among the events of that bucket only, or interpolated within the bucket when an error bounded by the bucket count is acceptable.
+ *
+ * Interpolating costs O(1) per bound. An exact search reads the finest level and costs O(log n) per bound, n being the number of events of the bucket:
+ * the bounds are only located in O(1) each when the finest buckets hold a bounded number of events, i.e. when the depth grows with the size of the timeseries.
+ */
+public class CountPyramid {
+
+	/** Deepest level allowed, the finest level of a pyramid having 2^depth buckets */
+	public static final int MAX_DEPTH = 30;
+
+	/** Timestamps the pyramid has been built from */
+	protected Timestamps timestamps;
+
+	/** Number of timestamps when the pyramid was built */
+	protected long size;
+
+	/** Modification count of the timestamps when the pyramid was built */
+	protected long modificationCount;
+
+	/** Timestamp of the first bucket boundary */
+	protected double origin;
+
+	/** Duration of a bucket for each level */
+	protected double[] bucketDurations;
+
+	/** Number of events before each bucket boundary, for each level */
+	protected long[][] levels;
+
+	/** Largest number of events in a single bucket, for each level */
+	protected long[] maxBucketCounts;
+
+	/**
+	 * Build the pyramid of a timeseries
+	 *
+	 * @param timestamps Timestamps of the timeseries
+	 * @param depth Index of the finest level, that has 2^depth buckets
+	 * @throws IllegalArgumentException If the depth is negative or greater than MAX_DEPTH
+	 */
+	public CountPyramid(Timestamps timestamps, int depth) {
+		checkDepth(depth);
+		this.timestamps = timestamps;
+		modificationCount = timestamps.getModificationCount();
+		size = timestamps.size();
+		origin = size == 0 ? 0. : timestamps.first();
+		double span = size == 0 ? 1. : Math.max(Math.nextUp(timestamps.last()) - origin, Double.MIN_NORMAL);
+
+		bucketDurations = new double[depth + 1];
+		levels = new long[depth + 1][];
+		maxBucketCounts = new long[depth + 1];
+		for (int l = 0; l <= depth; l++) {
+			bucketDurations[l] = span / (1L << l);
+		}
+
+		// finest level: one search per boundary is far cheaper than a scan of the events for large timeseries
+		long[] finest = new long[(1 << depth) + 1];
+		for (int b = 0; b < finest.length; b++) {
+			finest[b] = timestamps.lowerBound(boundary(depth, b));
+		}
+		levels[depth] = finest;
+
+		// coarser levels share their boundaries with the finest one
+		for (int l = depth - 1; l >= 0; l--) {
+			long[] level = new long[(1 << l) + 1];
+			for (int b = 0; b < level.length; b++) {
+				level[b] = finest[b << (depth - l)];
+			}
+			levels[l] = level;
+		}
+
+		for (int l = 0; l <= depth; l++) {
+			for (int b = 0; b < levels[l].length - 1; b++) {
+				maxBucketCounts[l] = Math.max(maxBucketCounts[l], levels[l][b + 1] - levels[l][b]);
+			}
+		}
+	}
+
+	/**
+	 * @param depth Index of the finest level of a pyramid
+	 * @throws IllegalArgumentException If the depth is negative or greater than MAX_DEPTH
+	 */
+	public static void checkDepth(int depth) {
+		if (depth < 0 || depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("Count pyramid depth should be between 0 and " + MAX_DEPTH + ": " + depth);
+		}
+	}
+
+	/**
+	 * @param timestamps Timestamps of a timeseries
+	 * @return True if the pyramid has been built from these timestamps and they did not change since
+	 */
+	public boolean isBuiltFrom(Timestamps timestamps) {
+		return this.timestamps == timestamps && modificationCount == timestamps.getModificationCount() && size == timestamps.size();
+	}
+
+	/** @return Index of the finest level */
+	public int getDepth() {
+		return levels.length - 1;
+	}
+
+	/**
+	 * @param level Level of the pyramid
+	 * @return Largest number of events in a single bucket of the level, i.e. the largest error on a bound located by interpolation at this level
+	 */
+	public long getMaxBucketCount(int level) {
+		return maxBucketCounts[level];
+	}
+
+	/**
+	 * Return the coarsest level whose buckets are not longer than a fraction of a time slice
+	 *
+	 * @param sliceDuration Duration of a time slice
+	 * @param tolerance Largest bucket duration accepted, as a fraction of the time slice duration
+	 * @return Coarsest level satisfying the tolerance, -1 if even the finest level does not
+	 */
+	public int selectLevel(double sliceDuration, double tolerance) {
+		for (int l = 0; l < bucketDurations.length; l++) {
+			if (bucketDurations[l] <= sliceDuration * tolerance) {
+				return l;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Locate the events at the given bounds
+	 *
+	 * @param bounds Timestamps of the bounds, sorted
+	 * @param boundIndices Output array receiving for each bound the index of the first event not before it
+	 * @param from Index of the first bound to locate
+	 * @param to Index after the last bound to locate
+	 * @param sliceDuration Duration between two consecutive bounds
+	 * @param tolerance Largest bucket duration to interpolate in, as a fraction of the slice duration. 0 for exact results
+	 */
+	public void locateBounds(double[] bounds, long[] boundIndices, int from, int to, double sliceDuration, double tolerance) {
+		int level = tolerance > 0 ? selectLevel(sliceDuration, tolerance) : -1;
+		boolean interpolate = level >= 0;
+		if (!interpolate) {
+			level = getDepth();
+		}
+
+		for (int i = from; i < to; i++) {
+			boundIndices[i] = lowerBound(bounds[i], level, interpolate);
+		}
+	}
+
+	/**
+	 * Return the index of the first event not before a timestamp
+	 *
+	 * @param timestamp Timestamp to look for
+	 * @param level Level of the pyramid to read
+	 * @param interpolate True to interpolate the index within the bucket, false to search it exactly
+	 * @return Index of the first event not before the timestamp, approximated if interpolating
+	 */
+	public long lowerBound(double timestamp, int level, boolean interpolate) {
+		long[] counts = levels[level];
+		int nbBuckets = counts.length - 1;
+		if (size == 0 || timestamp <= origin) {
+			return 0;
+		}
+		if (timestamp >= boundary(level, nbBuckets)) {
+			return timestamps.lowerBound(timestamp, counts[nbBuckets], size);
+		}
+
+		// bucket containing the timestamp, adjusted against the actual boundaries to be immune to rounding
+		int b = (int) Math.min(nbBuckets - 1, (timestamp - origin) / bucketDurations[level]);
+		while (b > 0 && boundary(level, b) > timestamp) {
+			b--;
+		}
+		while (b < nbBuckets - 1 && boundary(level, b + 1) <= timestamp) {
+			b++;
+		}
+
+		long low = counts[b];
+		long high = counts[b + 1];
+		double bucketStart = boundary(level, b);
+		if (timestamp == bucketStart || low == high) {
+			return low;
+		}
+		if (interpolate) {
+			return low + Math.round((timestamp - bucketStart) / bucketDurations[level] * (high - low));
+		}
+
+		return timestamps.lowerBound(timestamp, low, high);
+	}
+
+	/**
+	 * @param level Level of the pyramid
+	 * @param b Index of the boundary
+	 * @return Timestamp of the boundary, computed the same way for all the levels
+	 */
+	protected double boundary(int level, long b) {
+		return origin + b * bucketDurations[level];
+	}
+
+}
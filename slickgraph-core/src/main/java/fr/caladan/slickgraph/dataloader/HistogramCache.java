@@ -0,0 +1,336 @@
+package fr.caladan.slickgraph.dataloader;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.caladan.slickgraph.HistogramList;
+import fr.caladan.slickgraph.Timeseries;
+import fr.caladan.slickgraph.Timestamps;
+
+/**
+ * Bounded cache of histograms, keyed by timeseries and time window.
+ * The least recently used histograms are evicted once the estimated memory used by the cache exceeds its capacity,
+ * the histograms of a timeseries are removed once its timestamps change.
+ */
+public class HistogramCache {
+
+	/** Estimated size in bytes of a histogram value: a reference to a boxed double */
+	protected static final long BYTES_PER_VALUE = 24;
+
+	/** Size in bytes of a histogram value stored in a primitive array */
+	protected static final long BYTES_PER_PRIMITIVE_VALUE = Double.BYTES;
+
+	/** Estimated size in bytes of an entry besides its values: the key, the list and the map node */
+	protected static final long BYTES_PER_ENTRY = 160;
+
+	/** Histograms by key, in access order */
+	protected LinkedHashMap<Key, List<Double>> histograms;
+
+	/** Version of the data the cached histograms of each timeseries have been computed from */
+	protected Map<Timeseries, DataVersion> versions;
+
+	/** Largest estimated memory used by the cache, in bytes */
+	protected long capacity;
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/** Estimated memory used by the cache, in bytes */
+	protected long size;
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/** Number of lookups that found a histogram */
+	protected long hitCount;
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/** Number of lookups that did not find a histogram */
+	protected long missCount;
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Public constructor that initializes an empty cache
+	 *
+	 * @param capacity Largest estimated memory used by the cache, in bytes
+	 */
+	public HistogramCache(long capacity) {
+		this.capacity = capacity;
+		histograms = new LinkedHashMap<Key, List<Double>>(16, .75f, true);
+		versions = new HashMap<Timeseries, DataVersion>();
+		size = 0;
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	/**
+	 * Return the histogram of a timeseries for a time window
+	 *
+	 * @param timeseries Timeseries
+	 * @param grid Grid of the time window
+	 * @return Cached histogram, null if not in the cache
+	 */
+	public synchronized List<Double> get(Timeseries timeseries, PixelGrid grid) {
+		invalidateOutdated(timeseries);
+		List<Double> histogram = histograms.get(new Key(timeseries, grid));
+		if (histogram == null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+
+		return histogram;
+	}
+
+	/**
+	 * Return the histograms of all the timeseries for a time window, only if they are all cached
+	 *
+	 * @param timeseries Timeseries
+	 * @param grid Grid of the time window
+	 * @return Cached histograms, null if one of them is not in the cache
+	 */
+	public synchronized Map<Timeseries, List<Double>> getAll(List<Timeseries> timeseries, PixelGrid grid) {
+		Map<Timeseries, List<Double>> result = new LinkedHashMap<Timeseries, List<Double>>();
+		for (Timeseries ts : timeseries) {
+			List<Double> histogram = get(ts, grid);
+			if (histogram == null) {
+				return null;
+			}
+			result.put(ts, histogram);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Put a histogram computed from the current data of the timeseries in the cache, evicting the least recently used ones if needed
+	 *
+	 * @param timeseries Timeseries
+	 * @param grid Grid of the time window
+	 * @param histogram Histogram of the timeseries for the time window
+	 */
+	public synchronized void put(Timeseries timeseries, PixelGrid grid, List<Double> histogram) {
+		put(timeseries, grid, histogram, new DataVersion(timeseries.getTimestamps()));
+	}
+
+	/**
+	 * Put a histogram in the cache, evicting the least recently used ones if needed.
+	 * The histogram is not cached if the data of the timeseries changed since it has been computed.
+	 *
+	 * @param timeseries Timeseries
+	 * @param grid Grid of the time window
+	 * @param histogram Histogram of the timeseries for the time window
+	 * @param version Version of the data the histogram has been computed from
+	 */
+	public synchronized void put(Timeseries timeseries, PixelGrid grid, List<Double> histogram, DataVersion version) {
+		long entrySize = sizeOf(histogram);
+		if (entrySize > capacity || !version.isCurrent(timeseries.getTimestamps())) {
+			return;
+		}
+		if (!version.equals(versions.get(timeseries))) {
+			invalidate(timeseries);
+			versions.put(timeseries, version);
+		}
+
+		List<Double> previous = histograms.put(new Key(timeseries, grid), histogram);
+		if (previous != null) {
+			size -= sizeOf(previous);
+		}
+		size += entrySize;
+
+		Iterator<List<Double>> it = histograms.values().iterator();
+		while (size > capacity && it.hasNext()) {
+			size -= sizeOf(it.next());
+			it.remove();
+		}
+	}
+
+	/**
+	 * Put the histograms of several timeseries in the cache, in the order of the timeseries
+	 *
+	 * @param timeseries Timeseries
+	 * @param histograms Histograms by timeseries
+	 * @param grid Grid of the time window
+	 */
+	public synchronized void putAll(List<Timeseries> timeseries, Map<Timeseries, List<Double>> histograms, PixelGrid grid) {
+		putAll(timeseries, histograms, grid, versionsOf(timeseries));
+	}
+
+	/**
+	 * Put the histograms of several timeseries in the cache, in the order of the timeseries
+	 *
+	 * @param timeseries Timeseries
+	 * @param histograms Histograms by timeseries
+	 * @param grid Grid of the time window
+	 * @param versions Version of the data each histogram has been computed from
+	 */
+	public synchronized void putAll(List<Timeseries> timeseries, Map<Timeseries, List<Double>> histograms, PixelGrid grid, Map<Timeseries, DataVersion> versions) {
+		for (Timeseries ts : timeseries) {
+			List<Double> histogram = histograms.get(ts);
+			DataVersion version = versions.get(ts);
+			if (histogram != null && version != null) {
+				put(ts, grid, histogram, version);
+			}
+		}
+	}
+
+	/**
+	 * Remove the histograms of a timeseries, e.g. when its data changed
+	 *
+	 * @param timeseries Timeseries
+	 */
+	public synchronized void invalidate(Timeseries timeseries) {
+		versions.remove(timeseries);
+		Iterator<Map.Entry<Key, List<Double>>> it = histograms.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, List<Double>> entry = it.next();
+			if (entry.getKey().timeseries == timeseries) {
+				size -= sizeOf(entry.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove the histograms of a timeseries if its timestamps changed since they have been computed
+	 *
+	 * @param timeseries Timeseries
+	 */
+	public synchronized void invalidateOutdated(Timeseries timeseries) {
+		DataVersion version = versions.get(timeseries);
+		if (version != null && !version.isCurrent(timeseries.getTimestamps())) {
+			invalidate(timeseries);
+		}
+	}
+
+	/** Remove all the histograms */
+	public synchronized void clear() {
+		histograms.clear();
+		versions.clear();
+		size = 0;
+	}
+
+	/**
+	 * @param histogram Histogram
+	 * @return Estimated memory used by a cache entry holding the histogram
+	 */
+	protected static long sizeOf(List<Double> histogram) {
+		return BYTES_PER_ENTRY + histogram.size() * (histogram instanceof HistogramList ? BYTES_PER_PRIMITIVE_VALUE : BYTES_PER_VALUE);
+	}
+
+	/**
+	 * @param timeseries Timeseries
+	 * @return Version of the current data of each timeseries, to take before computing their histograms
+	 */
+	public static Map<Timeseries, DataVersion> versionsOf(List<Timeseries> timeseries) {
+		Map<Timeseries, DataVersion> versions = new HashMap<Timeseries, DataVersion>();
+		for (Timeseries ts : timeseries) {
+			versions.put(ts, new DataVersion(ts.getTimestamps()));
+		}
+
+		return versions;
+	}
+
+	/** Version of the data of a timeseries: its timestamps, the number of times they have been replaced and their number */
+	public static class DataVersion {
+
+		protected final Timestamps timestamps;
+
+		protected final long modificationCount;
+
+		protected final long size;
+
+		public DataVersion(Timestamps timestamps) {
+			this.timestamps = timestamps;
+			modificationCount = timestamps.getModificationCount();
+			size = timestamps.size();
+		}
+
+		/**
+		 * @param timestamps Current timestamps of the timeseries
+		 * @return True if the timestamps have not changed since the version was taken
+		 */
+		public boolean isCurrent(Timestamps timestamps) {
+			return this.timestamps == timestamps && modificationCount == timestamps.getModificationCount() && size == timestamps.size();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof DataVersion)) {
+				return false;
+			}
+			DataVersion v = (DataVersion) o;
+			return timestamps == v.timestamps && modificationCount == v.modificationCount && size == v.size;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = System.identityHashCode(timestamps);
+			h = 31 * h + Long.hashCode(modificationCount);
+			return 31 * h + Long.hashCode(size);
+		}
+
+	}
+
+	/**
+	 * Key of a histogram: the timeseries and the time window it has been computed for.
+	 * The bounds of the time window are snapped to a small fraction of a time slice,
+	 * so that a time window found again after a few steps, e.g. zooming in and back out, matches despite the rounding errors.
+	 */
+	protected static class Key {
+
+		/** Precision the bounds of the time window are snapped to, in bits below the duration of a time slice */
+		protected static final int SNAP_BITS = 16;
+
+		protected final Timeseries timeseries;
+
+		protected final double start;
+
+		protected final double end;
+
+		protected final double nbTimeSlices;
+
+		protected final int pixelsToTrim;
+
+		protected Key(Timeseries timeseries, PixelGrid grid) {
+			this.timeseries = timeseries;
+			// power of two, so that the few ulps the slice durations differ by do not change it
+			double snap = Math.scalb(1., Math.getExponent(grid.getSliceDuration()) - SNAP_BITS);
+			start = Math.rint(grid.getStart() / snap) * snap;
+			end = Math.rint(grid.getEnd() / snap) * snap;
+			nbTimeSlices = grid.getNbTimeSlices();
+			pixelsToTrim = grid.getPixelsToTrim();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return timeseries == k.timeseries &&
+					Double.compare(start, k.start) == 0 &&
+					Double.compare(end, k.end) == 0 &&
+					Double.compare(nbTimeSlices, k.nbTimeSlices) == 0 &&
+					pixelsToTrim == k.pixelsToTrim;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = System.identityHashCode(timeseries);
+			h = 31 * h + Double.hashCode(start);
+			h = 31 * h + Double.hashCode(end);
+			h = 31 * h + Double.hashCode(nbTimeSlices);
+			return 31 * h + pixelsToTrim;
+		}
+
+	}
+
+}
@@ -0,0 +1,47 @@
+package fr.caladan.slickgraph.dataloader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.caladan.slickgraph.Timeseries;
+import javafx.scene.paint.Color;
+
+/**
+ * Timeseries loader reading the timestamps from memory-mapped binary files.
+ * The timestamps stay in the files and are never copied onto the heap, so the timeseries can be larger than the heap.
+ * The global bounds come from the file headers and the pixel bounds are searched on the mapped regions.
+ *
+ * @see MappedTimestamps for the file format
+ */
+public class MappedFileTimeseriesLoader extends AbstractTimeseriesLoader {
+
+	/**
+	 * Public constructor that initializes the loader with one timeseries per file.
+	 * The timeseries are named after their file.
+	 *
+	 * @param files Timestamp files to map, in rendering order
+	 * @throws IOException If a file cannot be mapped
+	 */
+	public MappedFileTimeseriesLoader(List<Path> files) throws IOException {
+		super(mapFiles(files));
+	}
+
+	/**
+	 * Map the timestamp files and wrap them into timeseries
+	 *
+	 * @param files Timestamp files to map
+	 * @return List of timeseries reading their timestamps from the files
+	 * @throws IOException If a file cannot be mapped
+	 */
+	protected static List<Timeseries> mapFiles(List<Path> files) throws IOException {
+		List<Timeseries> timeseries = new ArrayList<Timeseries>(files.size());
+		for (Path file : files) {
+			timeseries.add(Timeseries.fromTimestamps(file.getFileName().toString(), Color.BLACK, new MappedTimestamps(file)));
+		}
+
+		return timeseries;
+	}
+
+}
@@ -0,0 +1,187 @@
+package fr.caladan.slickgraph.dataloader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import fr.caladan.slickgraph.Timestamps;
+
+/**
+ * Timestamps read straight from a memory-mapped binary file, they are never copied onto the heap.
+ *
+ * The file is made of a 32-byte header followed by the timestamps, all in little-endian order:
+ * <ul>
+ * <li>magic number (int) "SLGT"</li>
+ * <li>format version (int)</li>
+ * <li>number of timestamps (long)</li>
+ * <li>first timestamp (double)</li>
+ * <li>last timestamp (double)</li>
+ * <li>timestamps (double), strictly increasing</li>
+ * </ul>
+ */
+public class MappedTimestamps implements Timestamps {
+
+	/** Magic number at the beginning of the files */
+	public static final int MAGIC = 0x534C4754;
+
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** Size in bytes of the header */
+	public static final int HEADER_SIZE = 32;
+
+	/** Number of bits used to address a timestamp inside a mapped region */
+	protected static final int REGION_BITS = 27;
+
+	/** Mask extracting the position inside a region from an index */
+	protected static final long REGION_MASK = (1L << REGION_BITS) - 1;
+
+	/** Mapped regions of the file, each one holding up to 2^REGION_BITS timestamps (1 GB) */
+	protected DoubleBuffer[] regions;
+
+	/** Number of timestamps in the file */
+	protected long size;
+
+	/** First timestamp, read from the header */
+	protected double first;
+
+	/** Last timestamp, read from the header */
+	protected double last;
+
+	/**
+	 * Map a timestamp file in memory
+	 *
+	 * @param file Path of the file to map
+	 * @throws IOException If the file cannot be read or is not a valid timestamp file
+	 */
+	public MappedTimestamps(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					throw new IOException("Timestamp file " + file + " is truncated");
+				}
+			}
+			header.flip();
+
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a timestamp file");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version " + version + " of timestamp file " + file);
+			}
+			size = header.getLong();
+			first = header.getDouble();
+			last = header.getDouble();
+			if (size < 0 || channel.size() < HEADER_SIZE + size * Double.BYTES) {
+				throw new IOException("Timestamp file " + file + " is truncated");
+			}
+
+			// the mapping stays valid once the channel is closed
+			int nbRegions = (int) ((size + REGION_MASK) >>> REGION_BITS);
+			regions = new DoubleBuffer[nbRegions];
+			for (int r = 0; r < nbRegions; r++) {
+				long regionStart = (long) r << REGION_BITS;
+				long regionSize = Math.min(size - regionStart, 1L << REGION_BITS);
+				regions[r] = channel.map(MapMode.READ_ONLY, HEADER_SIZE + regionStart * Double.BYTES, regionSize * Double.BYTES)
+						.order(ByteOrder.LITTLE_ENDIAN)
+						.asDoubleBuffer();
+			}
+		}
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public double get(long index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return regions[(int) (index >>> REGION_BITS)].get((int) (index & REGION_MASK));
+	}
+
+	@Override
+	public double first() {
+		return first;
+	}
+
+	@Override
+	public double last() {
+		return last;
+	}
+
+	@Override
+	public long lowerBound(double timestamp) {
+		if (size == 0 || timestamp <= first) {
+			return 0;
+		}
+		if (timestamp > last) {
+			return size;
+		}
+
+		// binary search on the mapped region, only the visited pages are loaded
+		long low = 0;
+		long high = size - 1;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (regions[(int) (mid >>> REGION_BITS)].get((int) (mid & REGION_MASK)) < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Write timestamps into a file that can be mapped afterwards
+	 *
+	 * @param file Path of the file to write
+	 * @param timestamps Strictly increasing timestamps to write
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void write(Path file, Timestamps timestamps) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putLong(timestamps.size());
+			buffer.putDouble(timestamps.isEmpty() ? Double.NaN : timestamps.first());
+			buffer.putDouble(timestamps.isEmpty() ? Double.NaN : timestamps.last());
+
+			for (long i = 0; i < timestamps.size(); i++) {
+				if (buffer.remaining() < Double.BYTES) {
+					flush(channel, buffer);
+				}
+				buffer.putDouble(timestamps.get(i));
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Write the content of a buffer into a channel and clear the buffer
+	 *
+	 * @param channel Channel to write to
+	 * @param buffer Buffer to write
+	 * @throws IOException If the channel cannot be written
+	 */
+	protected static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
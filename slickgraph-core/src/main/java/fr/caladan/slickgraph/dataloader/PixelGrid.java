@@ -0,0 +1,134 @@
+package fr.caladan.slickgraph.dataloader;
+
+/**
+ * Timestamps of the pixel bounds of a time window.
+ * Bounds are computed from an origin and an integer offset, so that panning by whole pixels keeps the exact same bound timestamps.
+ */
+public class PixelGrid {
+
+	/** Timestamp from which the pixel bounds are computed */
+	protected final double origin;
+
+	/** Index, on the grid, of the first pixel bound of the time window */
+	protected final long offset;
+
+	/** Duration of a time slice */
+	protected final double sliceDuration;
+
+	/** Start timestamp of the time window */
+	protected final double start;
+
+	/** End timestamp of the time window */
+	protected final double end;
+
+	/** Number of time slices in the time window */
+	protected final double nbTimeSlices;
+
+	/** Number of pixels added on the sides, to be trimmed at rendering */
+	protected final int pixelsToTrim;
+
+	/**
+	 * Create the grid of a time window
+	 *
+	 * @param start Start timestamp of the time window
+	 * @param end End timestamp of the time window
+	 * @param nbTimeSlices Number of time slices in the time window
+	 * @param pixelsToTrim Number of pixels added on the sides, to be trimmed at rendering
+	 */
+	public PixelGrid(double start, double end, double nbTimeSlices, int pixelsToTrim) {
+		this(start, 0, (end - start) / nbTimeSlices, start, end, nbTimeSlices, pixelsToTrim);
+	}
+
+	protected PixelGrid(double origin, long offset, double sliceDuration, double start, double end, double nbTimeSlices, int pixelsToTrim) {
+		this.origin = origin;
+		this.offset = offset;
+		this.sliceDuration = sliceDuration;
+		this.start = start;
+		this.end = end;
+		this.nbTimeSlices = nbTimeSlices;
+		this.pixelsToTrim = pixelsToTrim;
+	}
+
+	/**
+	 * Return the grid of the time window moved by whole pixels
+	 *
+	 * @param shift Number of pixels to move the time window by
+	 * @return Shifted grid
+	 */
+	public PixelGrid shift(long shift) {
+		double shiftedStart = origin + (offset + shift) * sliceDuration;
+		return new PixelGrid(origin, offset + shift, sliceDuration, shiftedStart, shiftedStart + nbTimeSlices * sliceDuration, nbTimeSlices, pixelsToTrim);
+	}
+
+	/**
+	 * @param other Other grid
+	 * @return True if both grids have the same bound timestamps, up to a shift of their time window
+	 */
+	public boolean isAlignedWith(PixelGrid other) {
+		return other != null &&
+				origin == other.origin &&
+				sliceDuration == other.sliceDuration &&
+				nbTimeSlices == other.nbTimeSlices &&
+				pixelsToTrim == other.pixelsToTrim;
+	}
+
+	/**
+	 * @param other Grid aligned with this one
+	 * @return Number of pixels this time window is shifted by relatively to the other one
+	 */
+	public long shiftFrom(PixelGrid other) {
+		return offset - other.offset;
+	}
+
+	/** @return Number of pixel bounds, including the pixels to trim */
+	public int getNbBounds() {
+		return (int) nbTimeSlices + 2 * pixelsToTrim;
+	}
+
+	/**
+	 * @param i Index of the bound in the time window
+	 * @return Timestamp of the bound
+	 */
+	public double getBound(int i) {
+		return origin + (offset + i) * sliceDuration;
+	}
+
+	/** @return Timestamps of all the pixel bounds */
+	public double[] getBounds() {
+		double[] bounds = new double[getNbBounds()];
+		for (int i = 0; i < bounds.length; i++) {
+			bounds[i] = getBound(i);
+		}
+
+		return bounds;
+	}
+
+	/**
+	 * @param count Number of events in a time slice
+	 * @return Histogram value of the time slice
+	 */
+	public double getHistogramValue(long count) {
+		return count / (end - start) * nbTimeSlices;
+	}
+
+	public double getSliceDuration() {
+		return sliceDuration;
+	}
+
+	public double getStart() {
+		return start;
+	}
+
+	public double getEnd() {
+		return end;
+	}
+
+	public double getNbTimeSlices() {
+		return nbTimeSlices;
+	}
+
+	public int getPixelsToTrim() {
+		return pixelsToTrim;
+	}
+
+}
@@ -1,6 +1,9 @@
 package fr.caladan.slickgraph.dataloader;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import fr.caladan.slickgraph.Timeseries;
 import javafx.beans.property.ListProperty;
@@ -36,6 +39,15 @@ public interface TimeseriesLoader {
 	 */
 	public void setPixelsToTrim(int pixelsToTrim);
 
+	/**
+	 * Set whether the user is interacting with the graph, in which case the histograms can be approximated to be computed faster.
+	 * Loaders that cannot approximate ignore it.
+	 *
+	 * @param preview True while the user is interacting, false to compute exact histograms again
+	 */
+	public default void setPreview(boolean preview) {
+	}
+
 	/**
 	 * List of timeseries to be rendered.
 	 * Order of this list corresponds to the order of rendering from bottom to top
@@ -62,6 +74,34 @@ public interface TimeseriesLoader {
 	 */
 	public void updateTimeWindow(double start, double end);
 
+	/**
+	 * Update the time window to be visualized without blocking the caller.
+	 * Implementations computing the aggregation in the background may cancel the returned future when a newer time window is requested,
+	 * the future of the latest request is always completed.
+	 * By default, the aggregation is computed synchronously.
+	 *
+	 * @param start Start timestamp of the new time window
+	 * @param end End timestamp of the new time window
+	 * @return Histograms resulting from the aggregation of the new time window
+	 */
+	public default CompletableFuture<Map<Timeseries, List<Double>>> updateTimeWindowAsync(double start, double end) {
+		updateTimeWindow(start, end);
+		return CompletableFuture.completedFuture(new HashMap<Timeseries, List<Double>>(getHistograms()));
+	}
+
+	/**
+	 * Update the histograms of the current time window once timestamps have been appended to a timeseries.
+	 * Implementations may only update the bins on the right edge of the time window.
+	 * By default, the whole time window is aggregated again.
+	 *
+	 * @param timeseries Timeseries the timestamps have been appended to
+	 * @param from Index of the first timestamp appended
+	 * @return Histograms that changed
+	 */
+	public default CompletableFuture<Map<Timeseries, List<Double>>> appendAsync(Timeseries timeseries, long from) {
+		return updateTimeWindowAsync(getStartTimeWindow(), getEndTimeWindow());
+	}
+
 	/**
 	 * Perform a pan
 	 *
@@ -78,6 +118,24 @@ public interface TimeseriesLoader {
 		updateTimeWindow(start, end);
 	}
 
+	/**
+	 * Perform a pan without blocking the caller
+	 *
+	 * @param deltaX Horizontal displacement of the mouse cursor
+	 * @return Histograms resulting from the aggregation of the new time window
+	 * @see #updateTimeWindowAsync(double, double)
+	 */
+	public default CompletableFuture<Map<Timeseries, List<Double>>> panAsync(double deltaX) {
+		double start = getStartTimeWindow();
+		double end = getEndTimeWindow();
+
+		double delta = deltaX * (end - start) / getNbTimeSlices();
+		start += delta;
+		end += delta;
+
+		return updateTimeWindowAsync(start, end);
+	}
+
 	/**
 	 * Perform a zoom
 	 *
@@ -87,7 +145,7 @@ public interface TimeseriesLoader {
 		double start = getStartTimeWindow();
 		double end = getEndTimeWindow();
 
-		double delta = 50. * (end - start) / getNbTimeSlices();
+		double delta = zoomDelta(start, end, getNbTimeSlices(), z);
 		if (z > 0) {
 			start += delta;
 			end -= delta;
@@ -99,4 +157,46 @@ public interface TimeseriesLoader {
 		updateTimeWindow(start, end);
 	}
 
+	/**
+	 * Perform a zoom without blocking the caller
+	 *
+	 * @param z Y-delta of the zoom
+	 * @return Histograms resulting from the aggregation of the new time window
+	 * @see #updateTimeWindowAsync(double, double)
+	 */
+	public default CompletableFuture<Map<Timeseries, List<Double>>> zoomAsync(double z) {
+		double start = getStartTimeWindow();
+		double end = getEndTimeWindow();
+
+		double delta = zoomDelta(start, end, getNbTimeSlices(), z);
+		if (z > 0) {
+			start += delta;
+			end -= delta;
+		} else {
+			start -= delta;
+			end += delta;
+		}
+
+		return updateTimeWindowAsync(start, end);
+	}
+
+	/**
+	 * Return the duration each side of the time window moves by for a zoom step.
+	 * Zooming out is the inverse of zooming in, so that zooming back out returns to the same time window.
+	 *
+	 * @param start Start timestamp of the time window
+	 * @param end End timestamp of the time window
+	 * @param nbTimeSlices Number of time slices in the time window
+	 * @param z Y-delta of the zoom
+	 * @return Displacement of each side of the time window
+	 */
+	public static double zoomDelta(double start, double end, double nbTimeSlices, double z) {
+		if (z > 0) {
+			return 50. * (end - start) / nbTimeSlices;
+		}
+
+		// zooming in shrinks the time window by a factor (1 - 100 / nbTimeSlices)
+		return 50. * (end - start) / (nbTimeSlices > 100. ? nbTimeSlices - 100. : nbTimeSlices);
+	}
+
 }
@@ -0,0 +1,46 @@
+package fr.caladan.slickgraph.smoothing;
+
+import java.util.Arrays;
+
+import fr.caladan.slickgraph.ArrayKernels;
+import fr.caladan.slickgraph.StatisticKernel;
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+/** Smoothing engine computing the convolution directly, in O(pixels x kernel size) */
+public class DirectSmoothingEngine implements SmoothingEngine {
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType)
+	 */
+	@Override
+	public double[] smooth(double[] histogram, double bandWidth, KernelType kernelType) {
+		double[] smoothedHistogram = new double[histogram.length];
+		smooth(histogram, bandWidth, kernelType, smoothedHistogram);
+
+		return smoothedHistogram;
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType, double[])
+	 */
+	@Override
+	public void smooth(double[] histogram, double bandWidth, KernelType kernelType, double[] smoothed) {
+		smooth(histogram, bandWidth, kernelType, smoothed, 0);
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType, double[], int)
+	 */
+	@Override
+	public void smooth(double[] histogram, double bandWidth, KernelType kernelType, double[] smoothed, int from) {
+		double[] kernel = StatisticKernel.kernelValues(bandWidth, kernelType);
+
+		// the first two pixels are left empty, they are always trimmed
+		int empty = Math.min(2, histogram.length);
+		if (from < empty) {
+			Arrays.fill(smoothed, from, empty, 0.);
+		}
+		ArrayKernels.get().convolve(histogram, kernel, smoothed, Math.max(from, empty), histogram.length);
+	}
+
+}
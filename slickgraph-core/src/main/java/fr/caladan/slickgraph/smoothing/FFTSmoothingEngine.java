@@ -0,0 +1,180 @@
+package fr.caladan.slickgraph.smoothing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import fr.caladan.slickgraph.StatisticKernel;
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+/**
+ * Smoothing engine computing the convolution in the frequency domain, in O(pixels x log(pixels)) whatever the kernel size.
+ * The spectrum of each kernel is computed once for a padded length and shared by all the timeseries, so smoothing a histogram takes two transforms.
+ */
+public class FFTSmoothingEngine implements SmoothingEngine {
+
+	/** Largest number of kernel spectra kept */
+	protected static final int MAX_CACHED_SPECTRA = 32;
+
+	/** Kernel spectra, by bandwidth, kernel type and padded length, least recently used first */
+	protected Map<SpectrumKey, double[][]> spectra;
+
+	/** Public default constructor - initializes an empty cache of kernel spectra */
+	public FFTSmoothingEngine() {
+		spectra = new LinkedHashMap<SpectrumKey, double[][]>(16, .75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<SpectrumKey, double[][]> eldest) {
+				return size() > MAX_CACHED_SPECTRA;
+			}
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType)
+	 */
+	@Override
+	public double[] smooth(double[] histogram, double bandWidth, KernelType kernelType) {
+		double[] kernelValues = StatisticKernel.kernelValues(bandWidth, kernelType);
+		int radius = kernelValues.length / 2;
+
+		// pad so that the circular convolution does not wrap the kernel over the histogram
+		int length = Integer.highestOneBit(Math.max(1, histogram.length + radius - 1)) << 1;
+		double[][] spectrum = getSpectrum(kernelValues, bandWidth, kernelType, length);
+
+		double[] re = new double[length];
+		double[] im = new double[length];
+		System.arraycopy(histogram, 0, re, 0, histogram.length);
+		fft(re, im, false);
+
+		for (int i = 0; i < length; i++) {
+			double r = re[i] * spectrum[0][i] - im[i] * spectrum[1][i];
+			im[i] = re[i] * spectrum[1][i] + im[i] * spectrum[0][i];
+			re[i] = r;
+		}
+		fft(re, im, true);
+
+		double[] smoothedHistogram = new double[histogram.length];
+		for (int i = 0; i < histogram.length; i++) {
+			smoothedHistogram[i] = re[i] / length;
+		}
+
+		return smoothedHistogram;
+	}
+
+	/**
+	 * Return the spectrum of a kernel for a padded length, computing it if not cached
+	 *
+	 * @param kernelValues Kernel values
+	 * @param bandWidth Kernel bandwidth
+	 * @param kernelType Kernel type
+	 * @param length Padded length, a power of 2
+	 * @return Real and imaginary parts of the spectrum
+	 */
+	protected double[][] getSpectrum(double[] kernelValues, double bandWidth, KernelType kernelType, int length) {
+		SpectrumKey key = new SpectrumKey(bandWidth, kernelType, length);
+		synchronized (spectra) {
+			double[][] spectrum = spectra.get(key);
+			if (spectrum != null) {
+				return spectrum;
+			}
+		}
+
+		// kernel centered on 0, the smoothed value of a pixel being the sum of its neighbours weighted by the kernel
+		int radius = kernelValues.length / 2;
+		double[] re = new double[length];
+		double[] im = new double[length];
+		for (int k = 0; k < kernelValues.length; k++) {
+			re[Math.floorMod(radius - k, length)] += kernelValues[k];
+		}
+		fft(re, im, false);
+
+		double[][] spectrum = new double[][] { re, im };
+		synchronized (spectra) {
+			spectra.put(key, spectrum);
+		}
+
+		return spectrum;
+	}
+
+	/**
+	 * In-place radix-2 fast Fourier transform
+	 *
+	 * @param re Real parts, whose length is a power of 2
+	 * @param im Imaginary parts
+	 * @param inverse Indicates whether to compute the inverse transform, not scaled
+	 */
+	protected static void fft(double[] re, double[] im, boolean inverse) {
+		int n = re.length;
+
+		// bit reversal permutation
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		// butterflies
+		for (int size = 2; size <= n; size <<= 1) {
+			double angle = (inverse ? 2. : -2.) * Math.PI / size;
+			int half = size >> 1;
+			for (int k = 0; k < half; k++) {
+				double wr = Math.cos(angle * k);
+				double wi = Math.sin(angle * k);
+				for (int i = k; i < n; i += size) {
+					int j = i + half;
+					double tr = re[j] * wr - im[j] * wi;
+					double ti = re[j] * wi + im[j] * wr;
+					re[j] = re[i] - tr;
+					im[j] = im[i] - ti;
+					re[i] += tr;
+					im[i] += ti;
+				}
+			}
+		}
+	}
+
+	/** Key of a kernel spectrum */
+	protected static class SpectrumKey {
+
+		protected final double bandWidth;
+
+		protected final KernelType kernelType;
+
+		protected final int length;
+
+		protected SpectrumKey(double bandWidth, KernelType kernelType, int length) {
+			this.bandWidth = bandWidth;
+			this.kernelType = kernelType;
+			this.length = length;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof SpectrumKey)) {
+				return false;
+			}
+			SpectrumKey k = (SpectrumKey) o;
+			return Double.compare(bandWidth, k.bandWidth) == 0 && kernelType == k.kernelType && length == k.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(bandWidth, kernelType, length);
+		}
+
+	}
+
+}
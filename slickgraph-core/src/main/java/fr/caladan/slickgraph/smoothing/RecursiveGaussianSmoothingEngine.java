@@ -0,0 +1,109 @@
+package fr.caladan.slickgraph.smoothing;
+
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+/**
+ * Smoothing engine approximating the Gaussian kernel with a recursive filter of order 4 (Deriche, 1993).
+ * The sum of a causal and an anti-causal filters is computed over the histogram, so the cost is linear in the number of pixels whatever the bandwidth.
+ * Other kernel types are delegated to a fallback engine.
+ */
+public class RecursiveGaussianSmoothingEngine implements SmoothingEngine {
+
+	/** Constants of the approximation of the Gaussian by a sum of exponentially damped sinusoids */
+	protected static final double A0 = 1.680, A1 = 3.735, B0 = 1.783, B1 = 1.723, C0 = -.6803, C1 = -.2598, W0 = .6318, W1 = 1.997;
+
+	/**
+	 * Largest difference, relatively to the largest smoothed value, with the direct convolution by the kernel truncated at 3 bandwidths.
+	 * It mainly comes from the truncation of the direct kernel.
+	 */
+	public static final double ACCURACY = .01;
+
+	/** Engine used for the kernels that are not Gaussian */
+	protected SmoothingEngine fallback;
+
+	/** Public default constructor - falls back on the direct convolution */
+	public RecursiveGaussianSmoothingEngine() {
+		this(new DirectSmoothingEngine());
+	}
+
+	/**
+	 * Public constructor that sets the engine used for the kernels that are not Gaussian
+	 *
+	 * @param fallback Engine used for the other kernels
+	 */
+	public RecursiveGaussianSmoothingEngine(SmoothingEngine fallback) {
+		this.fallback = fallback;
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType)
+	 */
+	@Override
+	public double[] smooth(double[] histogram, double bandWidth, KernelType kernelType) {
+		if (kernelType != KernelType.GAUSSIAN) {
+			return fallback.smooth(histogram, bandWidth, kernelType);
+		}
+
+		// denominator, shared by both filters
+		double cos0 = Math.cos(W0 / bandWidth), sin0 = Math.sin(W0 / bandWidth);
+		double cos1 = Math.cos(W1 / bandWidth), sin1 = Math.sin(W1 / bandWidth);
+		double e0 = Math.exp(-B0 / bandWidth), e1 = Math.exp(-B1 / bandWidth);
+		double d1 = -2. * e1 * cos1 - 2. * e0 * cos0;
+		double d2 = 4. * cos1 * cos0 * e0 * e1 + e1 * e1 + e0 * e0;
+		double d3 = -2. * cos0 * e0 * e1 * e1 - 2. * cos1 * e1 * e0 * e0;
+		double d4 = e0 * e0 * e1 * e1;
+
+		// numerator of the causal filter
+		double n0 = A0 + C0;
+		double n1 = e1 * (C1 * sin1 - (C0 + 2. * A0) * cos1) + e0 * (A1 * sin0 - (2. * C0 + A0) * cos0);
+		double n2 = 2. * e0 * e1 * ((A0 + C0) * cos1 * cos0 - A1 * cos1 * sin0 - C1 * cos0 * sin1) + C0 * e0 * e0 + A0 * e1 * e1;
+		double n3 = e1 * e0 * e0 * (C1 * sin1 - C0 * cos1) + e0 * e1 * e1 * (A1 * sin0 - A0 * cos0);
+
+		// numerator of the anti-causal filter, so that the impulse response is symmetric
+		double m1 = n1 - d1 * n0;
+		double m2 = n2 - d2 * n0;
+		double m3 = n3 - d3 * n0;
+		double m4 = -d4 * n0;
+
+		// normalize so that the kernel sums to 1
+		double denominator = 1. + d1 + d2 + d3 + d4;
+		double norm = denominator / (n0 + n1 + n2 + n3 + m1 + m2 + m3 + m4);
+
+		// causal filter, the histogram being 0 before its first pixel
+		double[] smoothedHistogram = new double[histogram.length];
+		double x1 = 0., x2 = 0., x3 = 0.;
+		double y1 = 0., y2 = 0., y3 = 0., y4 = 0.;
+		for (int i = 0; i < histogram.length; i++) {
+			double x0 = histogram[i];
+			double y0 = n0 * x0 + n1 * x1 + n2 * x2 + n3 * x3 - d1 * y1 - d2 * y2 - d3 * y3 - d4 * y4;
+			smoothedHistogram[i] = y0;
+			x3 = x2;
+			x2 = x1;
+			x1 = x0;
+			y4 = y3;
+			y3 = y2;
+			y2 = y1;
+			y1 = y0;
+		}
+
+		// anti-causal filter, the histogram being 0 after its last pixel
+		x1 = x2 = x3 = 0.;
+		double x4 = 0.;
+		y1 = y2 = y3 = y4 = 0.;
+		for (int i = histogram.length - 1; i >= 0; i--) {
+			double y0 = m1 * x1 + m2 * x2 + m3 * x3 + m4 * x4 - d1 * y1 - d2 * y2 - d3 * y3 - d4 * y4;
+			x4 = x3;
+			x3 = x2;
+			x2 = x1;
+			x1 = histogram[i];
+			y4 = y3;
+			y3 = y2;
+			y2 = y1;
+			y1 = y0;
+			smoothedHistogram[i] = (smoothedHistogram[i] + y0) * norm;
+		}
+
+		return smoothedHistogram;
+	}
+
+}
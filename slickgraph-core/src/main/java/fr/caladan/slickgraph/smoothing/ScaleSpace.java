@@ -0,0 +1,141 @@
+package fr.caladan.slickgraph.smoothing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import fr.caladan.slickgraph.HistogramList;
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+import fr.caladan.slickgraph.Timeseries;
+
+/**
+ * Histograms smoothed for a ladder of bandwidths.
+ * The smoothed histograms of any bandwidth within the ladder are interpolated from the two closest levels, in O(pixels).
+ */
+public class ScaleSpace {
+
+	/** Bandwidths of the levels, increasing */
+	protected final double[] bandWidths;
+
+	/** Kernel type the histograms have been smoothed with */
+	protected final KernelType kernelType;
+
+	/** Histograms the scale space has been built from */
+	protected final Map<Timeseries, List<Double>> histograms;
+
+	/** Smoothed histograms of each level, for each timeseries */
+	protected final Map<Timeseries, double[][]> levels;
+
+	/**
+	 * Smooth histograms for a ladder of bandwidths
+	 *
+	 * @param histograms Histograms to smooth
+	 * @param bandWidths Bandwidths of the levels, increasing
+	 * @param kernelType Kernel type
+	 * @param engine Engine computing the convolutions
+	 * @param cancelled Tells whether the scale space is no longer needed
+	 * @return Scale space, null if cancelled before completion
+	 */
+	public static ScaleSpace build(Map<Timeseries, List<Double>> histograms, double[] bandWidths, KernelType kernelType, SmoothingEngine engine, BooleanSupplier cancelled) {
+		Map<Timeseries, double[][]> levels = new HashMap<Timeseries, double[][]>();
+		for (Map.Entry<Timeseries, List<Double>> entry : histograms.entrySet()) {
+			double[] values = HistogramList.values(entry.getValue());
+
+			double[][] smoothed = new double[bandWidths.length][];
+			for (int l = 0; l < bandWidths.length; l++) {
+				if (cancelled.getAsBoolean()) {
+					return null;
+				}
+				smoothed[l] = engine.smooth(values, bandWidths[l], kernelType);
+			}
+			levels.put(entry.getKey(), smoothed);
+		}
+
+		return new ScaleSpace(histograms, bandWidths, kernelType, levels);
+	}
+
+	/**
+	 * Return a geometric ladder of bandwidths
+	 *
+	 * @param min Smallest bandwidth
+	 * @param max Largest bandwidth
+	 * @param ratio Ratio between two consecutive bandwidths, greater than 1
+	 * @return Bandwidths from min to max, both included
+	 */
+	public static double[] ladder(double min, double max, double ratio) {
+		int nbLevels = Math.max(2, (int) Math.ceil(Math.log(max / min) / Math.log(ratio)) + 1);
+		double[] bandWidths = new double[nbLevels];
+		for (int l = 0; l < nbLevels; l++) {
+			bandWidths[l] = min * Math.pow(max / min, l / (nbLevels - 1.));
+		}
+		bandWidths[nbLevels - 1] = max;
+
+		return bandWidths;
+	}
+
+	protected ScaleSpace(Map<Timeseries, List<Double>> histograms, double[] bandWidths, KernelType kernelType, Map<Timeseries, double[][]> levels) {
+		this.histograms = histograms;
+		this.bandWidths = bandWidths;
+		this.kernelType = kernelType;
+		this.levels = levels;
+	}
+
+	/**
+	 * @param histograms Current histograms
+	 * @param kernelType Current kernel type
+	 * @param bandWidth Current bandwidth
+	 * @return True if the smoothed histograms can be interpolated from the scale space
+	 */
+	public boolean covers(Map<Timeseries, List<Double>> histograms, KernelType kernelType, double bandWidth) {
+		if (kernelType != this.kernelType || bandWidth < bandWidths[0] || bandWidth > bandWidths[bandWidths.length - 1] || histograms.size() != this.histograms.size()) {
+			return false;
+		}
+
+		// the histograms are replaced, never modified, on update
+		for (Map.Entry<Timeseries, List<Double>> entry : histograms.entrySet()) {
+			if (this.histograms.get(entry.getKey()) != entry.getValue()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Interpolate the smoothed histogram of a timeseries between the two closest levels
+	 *
+	 * @param timeseries Timeseries
+	 * @param bandWidth Bandwidth, within the ladder
+	 * @return Smoothed histogram
+	 */
+	public double[] interpolate(Timeseries timeseries, double bandWidth) {
+		double[] interpolated = new double[levels.get(timeseries)[0].length];
+		interpolate(timeseries, bandWidth, interpolated);
+
+		return interpolated;
+	}
+
+	/**
+	 * Interpolate the smoothed histogram of a timeseries between the two closest levels into a buffer
+	 *
+	 * @param timeseries Timeseries
+	 * @param bandWidth Bandwidth, within the ladder
+	 * @param interpolated Buffer receiving the smoothed histogram, at least of the size of the histogram
+	 */
+	public void interpolate(Timeseries timeseries, double bandWidth, double[] interpolated) {
+		double[][] smoothed = levels.get(timeseries);
+		int l = 0;
+		while (l < bandWidths.length - 2 && bandWidths[l + 1] < bandWidth) {
+			l++;
+		}
+
+		double t = (bandWidth - bandWidths[l]) / (bandWidths[l + 1] - bandWidths[l]);
+		double[] lower = smoothed[l];
+		double[] upper = smoothed[l + 1];
+		for (int i = 0; i < lower.length; i++) {
+			interpolated[i] = lower[i] + t * (upper[i] - lower[i]);
+		}
+	}
+
+}
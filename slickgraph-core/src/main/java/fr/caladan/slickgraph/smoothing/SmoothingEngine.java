@@ -0,0 +1,45 @@
+package fr.caladan.slickgraph.smoothing;
+
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+/** Interface defining how a histogram is convolved with a statistic kernel. Engines may be shared by several graphs, so they have to be thread-safe */
+public interface SmoothingEngine {
+
+	/**
+	 * Convolve a histogram with a statistic kernel
+	 *
+	 * @param histogram Histogram to smooth
+	 * @param bandWidth Kernel bandwidth, in pixels
+	 * @param kernelType Kernel type
+	 * @return Smoothed histogram, of the same size as the histogram
+	 */
+	public double[] smooth(double[] histogram, double bandWidth, KernelType kernelType);
+
+	/**
+	 * Convolve a histogram with a statistic kernel into a buffer, so that frames can reuse their buffers
+	 *
+	 * @param histogram Histogram to smooth
+	 * @param bandWidth Kernel bandwidth, in pixels
+	 * @param kernelType Kernel type
+	 * @param smoothed Buffer receiving the smoothed histogram, at least of the size of the histogram
+	 */
+	public default void smooth(double[] histogram, double bandWidth, KernelType kernelType, double[] smoothed) {
+		System.arraycopy(smooth(histogram, bandWidth, kernelType), 0, smoothed, 0, histogram.length);
+	}
+
+	/**
+	 * Convolve the end of a histogram with a statistic kernel into a buffer already holding the smoothing of the beginning,
+	 * so that only the pixels reached by the values that changed are computed again.
+	 * By default, the whole histogram is smoothed again, as engines that do not convolve directly spread each value over all the pixels.
+	 *
+	 * @param histogram Histogram to smooth
+	 * @param bandWidth Kernel bandwidth, in pixels
+	 * @param kernelType Kernel type
+	 * @param smoothed Buffer receiving the smoothed histogram, whose values before the first one to compute are left unchanged
+	 * @param from Index of the first smoothed value to compute
+	 */
+	public default void smooth(double[] histogram, double bandWidth, KernelType kernelType, double[] smoothed, int from) {
+		smooth(histogram, bandWidth, kernelType, smoothed);
+	}
+
+}
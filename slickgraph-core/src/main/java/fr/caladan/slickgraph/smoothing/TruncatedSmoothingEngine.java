@@ -0,0 +1,87 @@
+package fr.caladan.slickgraph.smoothing;
+
+import fr.caladan.slickgraph.ArrayKernels;
+import fr.caladan.slickgraph.StatisticKernel;
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+/**
+ * Smoothing engine computing the convolution directly with the central part of the kernel only, scaled back to the sum of the whole kernel.
+ * It approximates the smoothing for the frames shown while the user is interacting.
+ */
+public class TruncatedSmoothingEngine implements SmoothingEngine {
+
+	/** Part of the kernel radius kept */
+	protected double truncation;
+	public double getTruncation() {
+		return truncation;
+	}
+
+	/** Public default constructor - keeps half of the kernel radius, i.e. 1.5 bandwidth for the Gaussian kernel */
+	public TruncatedSmoothingEngine() {
+		this(.5);
+	}
+
+	/**
+	 * Public constructor that sets the part of the kernel kept
+	 *
+	 * @param truncation Part of the kernel radius kept, between 0 and 1
+	 */
+	public TruncatedSmoothingEngine(double truncation) {
+		this.truncation = Math.max(0., Math.min(1., truncation));
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType)
+	 */
+	@Override
+	public double[] smooth(double[] histogram, double bandWidth, KernelType kernelType) {
+		double[] smoothedHistogram = new double[histogram.length];
+		smooth(histogram, bandWidth, kernelType, smoothedHistogram);
+
+		return smoothedHistogram;
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType, double[])
+	 */
+	@Override
+	public void smooth(double[] histogram, double bandWidth, KernelType kernelType, double[] smoothed) {
+		smooth(histogram, bandWidth, kernelType, smoothed, 0);
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.smoothing.SmoothingEngine#smooth(double[], double, fr.caladan.slickgraph.StatisticKernel.KernelType, double[], int)
+	 */
+	@Override
+	public void smooth(double[] histogram, double bandWidth, KernelType kernelType, double[] smoothed, int from) {
+		double[] kernel = truncate(StatisticKernel.kernelValues(bandWidth, kernelType));
+		ArrayKernels.get().convolve(histogram, kernel, smoothed, Math.max(0, from), histogram.length);
+	}
+
+	/**
+	 * @param kernel Kernel values, centered
+	 * @return Central part of the kernel, with the same sum as the whole kernel
+	 */
+	protected double[] truncate(double[] kernel) {
+		int radius = kernel.length / 2;
+		int kept = (int) Math.ceil(radius * truncation);
+		double[] truncated = new double[2 * kept + 1];
+		double sum = 0.;
+		double keptSum = 0.;
+		for (int k = 0; k < kernel.length; k++) {
+			sum += kernel[k];
+		}
+		for (int k = 0; k < truncated.length; k++) {
+			truncated[k] = kernel[radius - kept + k];
+			keptSum += truncated[k];
+		}
+		if (keptSum > 0.) {
+			for (int k = 0; k < truncated.length; k++) {
+				truncated[k] *= sum / keptSum;
+			}
+		}
+
+		return truncated;
+	}
+
+}
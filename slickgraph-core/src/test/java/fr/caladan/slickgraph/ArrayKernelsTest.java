@@ -0,0 +1,78 @@
+package fr.caladan.slickgraph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Random;
+
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ArrayKernelsTest {
+
+	/** Set by the build when it compiles the Vector API implementation, which must then be available */
+	private static final String VECTOR_REQUIRED_PROPERTY = "slickgraph.vector.required";
+
+	private final Random random = new Random(13);
+
+	/** @return Implementation using the Vector API, the test being skipped if it is not available on this JVM */
+	private ArrayKernels vectorKernels() {
+		ArrayKernels vector = ArrayKernels.load(ArrayKernels.VECTOR_IMPLEMENTATION);
+		if (Boolean.getBoolean(VECTOR_REQUIRED_PROPERTY)) {
+			assertNotNull(vector);
+		}
+		Assume.assumeNotNull(vector);
+		return vector;
+	}
+
+	@Test
+	public void testInstanceIsAvailable() {
+		assertNotNull(ArrayKernels.get());
+	}
+
+	@Test
+	public void testDifferencesMatchScalar() {
+		ArrayKernels vector = vectorKernels();
+		ArrayKernels scalar = new ScalarArrayKernels();
+
+		for (int length : new int[] { 0, 1, 7, 8, 9, 1000, 1923 }) {
+			long[] indices = new long[length + 1];
+			for (int i = 1; i < indices.length; i++) {
+				indices[i] = indices[i - 1] + (random.nextDouble() < .2 ? random.nextInt(100000) : random.nextInt(3));
+			}
+
+			double[] expected = new double[length];
+			double[] actual = new double[length];
+			scalar.differences(indices, 12345.678, 1700., expected);
+			vector.differences(indices, 12345.678, 1700., actual);
+			assertArrayEquals(expected, actual, 0.);
+		}
+	}
+
+	@Test
+	public void testConvolveMatchesScalar() {
+		ArrayKernels vector = vectorKernels();
+		ArrayKernels scalar = new ScalarArrayKernels();
+
+		for (int length : new int[] { 1, 5, 40, 1000, 1923 }) {
+			double[] histogram = new double[length];
+			for (int i = 0; i < length; i++) {
+				histogram[i] = random.nextDouble() < .3 ? random.nextInt(50) * .37 : 0.;
+			}
+
+			for (KernelType kernelType : KernelType.values()) {
+				for (double bandWidth : new double[] { 1., 2.5, 7., 30. }) {
+					double[] kernel = StatisticKernel.kernelValues(bandWidth, kernelType);
+					double[] expected = new double[length];
+					double[] actual = new double[length];
+					scalar.convolve(histogram, kernel, expected, Math.min(2, length), length);
+					vector.convolve(histogram, kernel, actual, Math.min(2, length), length);
+					assertArrayEquals(expected, actual, 0.);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package fr.caladan.slickgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class FrameTest {
+
+	private Timeseries[] createTimeseries(int count) {
+		Timeseries[] timeseries = new Timeseries[count];
+		for (int t = 0; t < count; t++) {
+			timeseries[t] = Timeseries.fromArray("ts " + t, Color.BLACK, new double[] { 0., 1., 2. });
+		}
+		return timeseries;
+	}
+
+	@Test
+	public void testAllocation() {
+		Timeseries[] timeseries = createTimeseries(3);
+		Frame frame = new Frame(null, timeseries, 100, 10);
+
+		assertEquals(3, frame.getStack().length);
+		assertEquals(3, frame.getVertices().size());
+		for (int i = 0; i < timeseries.length; i++) {
+			assertTrue(frame.getVertices().get(timeseries[i]) == frame.getStack()[i]);
+			assertEquals(80, frame.getStack()[i].getSize());
+		}
+		assertEquals(80, frame.getStackOutline().getSize());
+		assertEquals(80, frame.getSlgAlphas().length);
+		assertEquals(100, frame.getPixelTotals().length);
+		assertEquals(80, frame.getColumnCounts().length);
+		assertEquals(10, frame.getPixelsToTrim());
+	}
+
+	@Test
+	public void testRecycledBuffersAreReused() {
+		Frame shown = new Frame(null, createTimeseries(2), 100, 10);
+		Timeseries[] timeseries = createTimeseries(3);
+		Frame frame = new Frame(shown, timeseries, 100, 10);
+
+		assertTrue(frame.getStack()[0] == shown.getStack()[0]);
+		assertTrue(frame.getStack()[1] == shown.getStack()[1]);
+		assertEquals(80, frame.getStack()[2].getSize());
+		assertTrue(frame.getStackOutline() == shown.getStackOutline());
+		assertTrue(frame.getSlgAlphas() == shown.getSlgAlphas());
+		assertTrue(frame.getPixelTotals() == shown.getPixelTotals());
+		assertTrue(frame.getColumnCounts() == shown.getColumnCounts());
+
+		// buffers of another size are reallocated
+		Frame resized = new Frame(frame, timeseries, 120, 10);
+		assertEquals(100, resized.getStack()[0].getSize());
+		assertEquals(100, resized.getSlgAlphas().length);
+		assertEquals(120, resized.getPixelTotals().length);
+	}
+
+}
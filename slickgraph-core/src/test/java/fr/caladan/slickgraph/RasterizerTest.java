@@ -0,0 +1,49 @@
+package fr.caladan.slickgraph;
+
+import static org.junit.Assert.assertEquals;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class RasterizerTest {
+
+	@Test
+	public void testColumnsAndBlending() {
+		Rasterizer rasterizer = new Rasterizer();
+		rasterizer.resize(4, 10);
+		rasterizer.clear(Rasterizer.toArgb(Color.WHITE));
+
+		rasterizer.fillColumn(1., 2., 6., Rasterizer.toArgb(Color.RED));
+		assertEquals(0xffffffff, rasterizer.pixels[1 * 4 + 1]);
+		assertEquals(0xffff0000, rasterizer.pixels[2 * 4 + 1]);
+		assertEquals(0xffff0000, rasterizer.pixels[5 * 4 + 1]);
+		assertEquals(0xffffffff, rasterizer.pixels[6 * 4 + 1]);
+
+		// half transparent black over white
+		rasterizer.fillColumn(2., 0., 10., 0x80000000);
+		assertEquals(0xff7f7f7f, rasterizer.pixels[3 * 4 + 2]);
+
+		// out of the buffer
+		rasterizer.fillColumn(7., 0., 10., 0xff000000);
+		rasterizer.fillColumn(-1., 0., 10., 0xff000000);
+		assertEquals(0xffffffff, rasterizer.pixels[3]);
+	}
+
+	@Test
+	public void testLine() {
+		Rasterizer rasterizer = new Rasterizer();
+		rasterizer.resize(3, 8);
+		rasterizer.clear(0);
+
+		rasterizer.drawLine(0., 1., 1., 6., 0xff000000);
+		int plotted = 0;
+		for (int pixel : rasterizer.pixels) {
+			plotted += pixel != 0 ? 1 : 0;
+		}
+		assertEquals(6, plotted);
+		assertEquals(0xff000000, rasterizer.pixels[1 * 3]);
+		assertEquals(0xff000000, rasterizer.pixels[6 * 3 + 1]);
+	}
+
+}
@@ -0,0 +1,60 @@
+package fr.caladan.slickgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import javafx.scene.Group;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderSchedulerTest {
+
+	private int wakes;
+
+	private RenderScheduler scheduler;
+
+	@Before
+	public void createScheduler() {
+		wakes = 0;
+		scheduler = new RenderScheduler() {
+			@Override
+			public void wake() {
+				wakes++;
+			}
+		};
+	}
+
+	@Test
+	public void testHiddenAncestorWakesOnceShown() {
+		Group node = new Group();
+		Group parent = new Group(node);
+		Group root = new Group(parent);
+		parent.setVisible(false);
+		assertFalse(RenderScheduler.isShowing(node));
+
+		scheduler.watchUntilShown(node);
+		scheduler.watchUntilShown(node);
+		assertEquals(0, wakes);
+
+		parent.setVisible(true);
+		assertEquals(1, wakes);
+
+		// the listeners are removed once notified, the node being watched again only if it is still hidden
+		root.setVisible(false);
+		root.setVisible(true);
+		assertEquals(1, wakes);
+	}
+
+	@Test
+	public void testReparentingWakes() {
+		Group node = new Group();
+		Group hidden = new Group(node);
+		hidden.setVisible(false);
+
+		scheduler.watchUntilShown(node);
+		new Group().getChildren().add(node);
+		assertEquals(1, wakes);
+	}
+
+}
@@ -1,19 +1,35 @@
 package fr.caladan.slickgraph;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javafx.animation.Animation;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 
+import org.junit.Assume;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 public class SLGTest extends Application {
 
+	private static final CountDownLatch started = new CountDownLatch(1);
+
 	private List<Timeseries> ts;
 
 	public SLGTest() {
@@ -29,6 +45,48 @@ public class SLGTest extends Application {
 	@Override
 	public void start(Stage primaryStage) throws Exception {
 		// nothing to do, we only need the jfx thread
+		started.countDown();
+	}
+
+	private static void runOnFxThread(Runnable runnable) throws Throwable {
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		CountDownLatch done = new CountDownLatch(1);
+		Platform.runLater(() -> {
+			try {
+				runnable.run();
+			} catch (Throwable e) {
+				error.set(e);
+			} finally {
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		if (error.get() != null) {
+			throw error.get();
+		}
+	}
+
+	/** Graph counting the set ups for a new size, with a blank snapshot */
+	private static class ResizedSlickGraph extends SlickGraph {
+
+		private int nbSetUps;
+
+		private ResizedSlickGraph() {
+			super(200, 100);
+		}
+
+		@Override
+		protected void handleHiDPI() {
+			nbSetUps++;
+			super.handleHiDPI();
+		}
+
+		@Override
+		protected Image snapshotCanvas(double width, double height) {
+			return new WritableImage((int) width, (int) height);
+		}
+
 	}
 
 	@BeforeClass
@@ -61,6 +119,79 @@ public class SLGTest extends Application {
 		assertTrue(slg.getTimeseries().isEmpty());
 	}
 
+	@Test
+	public void testResizeWithoutFrameIsImmediate() throws Throwable {
+		runOnFxThread(() -> {
+			ResizedSlickGraph slg = new ResizedSlickGraph();
+			new Scene(new Group(slg));
+			slg.nbSetUps = 0;
+
+			slg.widthProperty().set(300.);
+			assertEquals(1, slg.nbSetUps);
+			assertNull(slg.resizeSnapshot);
+		});
+	}
+
+	@Test
+	public void testResizeDebounced() throws Throwable {
+		ResizedSlickGraph[] slg = new ResizedSlickGraph[1];
+		runOnFxThread(() -> {
+			slg[0] = new ResizedSlickGraph();
+			new Scene(new Group(slg[0]));
+			slg[0].shownFrame = new Frame(null, new Timeseries[0], 200, 0);
+			slg[0].nbSetUps = 0;
+
+			// a single snapshot is stretched while the size changes
+			slg[0].widthProperty().set(300.);
+			Image snapshot = slg[0].resizeSnapshot;
+			assertNotNull(snapshot);
+			slg[0].heightProperty().set(150.);
+			slg[0].widthProperty().set(320.);
+			assertTrue(slg[0].resizeSnapshot == snapshot);
+			assertEquals(Animation.Status.RUNNING, slg[0].resizeSettle.getStatus());
+			assertEquals(0, slg[0].nbSetUps);
+		});
+
+		// the graph is set up once for the new size after the last resize event
+		Thread.sleep((long) (4 * SlickGraph.RESIZE_SETTLE_DELAY));
+		runOnFxThread(() -> {
+			assertEquals(1, slg[0].nbSetUps);
+			assertNull(slg[0].resizeSnapshot);
+		});
+	}
+
+	@Test
+	public void testDisplayScaleFollowsRenderScale() throws Throwable {
+		Method setRenderScaleX;
+		try {
+			setRenderScaleX = Window.class.getMethod("setRenderScaleX", double.class);
+		} catch (NoSuchMethodException e) {
+			setRenderScaleX = null;
+		}
+		// windows only have a render scale from JavaFX 9
+		Assume.assumeNotNull(setRenderScaleX);
+
+		Method setScale = setRenderScaleX;
+		runOnFxThread(() -> {
+			ResizedSlickGraph slg = new ResizedSlickGraph();
+			Stage stage = new Stage();
+			stage.setScene(new Scene(new Group(slg)));
+			assertNotNull(slg.getDisplayScale());
+			slg.nbSetUps = 0;
+
+			// moved to a screen with another scale
+			try {
+				setScale.invoke(stage, 3.);
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException(e);
+			}
+			assertEquals(1, slg.nbSetUps);
+			assertEquals(3., slg.getDisplayScale().getX(), 0.);
+			assertEquals(3., slg.xScaleProperty.get(), 0.);
+			assertEquals(600., slg.scaledWidthProperty.get(), 0.);
+		});
+	}
+
 	@Test
 	public void testHistogram() {
 		SlickGraph slg = new SlickGraph();
@@ -78,12 +209,12 @@ public class SLGTest extends Application {
 	@Test
 	public void testKernel() {
 		SlickGraph slg = new SlickGraph();
-		List<Double> kernel = StatisticKernel.gaussian(slg.getKernelBandWidth());
+		double[] kernel = StatisticKernel.gaussian(slg.getKernelBandWidth());
 		slg.setTimeseries(ts);
 
-		assertTrue(kernel.size() == slg.kernelBandWidthProperty.get() * 6 + 1);
+		assertTrue(kernel.length == slg.kernelBandWidthProperty.get() * 6 + 1);
 		for (int i = 0; i < slg.kernelBandWidthProperty.get() * 3; i++) {
-			assertTrue(kernel.get(i).doubleValue() == kernel.get(kernel.size() - i - 1).doubleValue());
+			assertTrue(kernel[i] == kernel[kernel.length - i - 1]);
 		}
 	}
 
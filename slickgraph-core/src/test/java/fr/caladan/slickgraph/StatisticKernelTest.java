@@ -0,0 +1,68 @@
+package fr.caladan.slickgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+import org.junit.Test;
+
+public class StatisticKernelTest {
+
+	@Test
+	public void testCompactSupportKernels() {
+		double[] bandWidths = { 1., 2.5, 7., 13.3 };
+		for (KernelType kernelType : KernelType.values()) {
+			if (kernelType == KernelType.GAUSSIAN) {
+				continue;
+			}
+
+			for (double bandWidth : bandWidths) {
+				double[] kernel = StatisticKernel.kernelValues(bandWidth, kernelType);
+				assertEquals(2 * (int) Math.ceil(StatisticKernel.radius(bandWidth, kernelType)) + 1, kernel.length);
+
+				double sum = 0.;
+				for (int i = 0; i < kernel.length; i++) {
+					assertTrue(kernel[i] >= 0.);
+					assertEquals(kernel[i], kernel[kernel.length - i - 1], 1e-15);
+					sum += kernel[i];
+				}
+				assertEquals(1., sum, 1e-12);
+
+				// cheaper than the Gaussian kernel of the same bandwidth
+				assertTrue(kernel.length < StatisticKernel.kernelValues(bandWidth, KernelType.GAUSSIAN).length);
+			}
+		}
+	}
+
+	@Test
+	public void testCacheIsBoundedAndShared() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int t = 0; t < 4; t++) {
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 1000; i++) {
+					double bandWidth = 1. + i * .01;
+					double[] kernel = StatisticKernel.kernelValues(bandWidth, KernelType.GAUSSIAN);
+					assertEquals((int) (Math.ceil(bandWidth * 3) * 2 + 1), kernel.length);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		synchronized (StatisticKernel.cachedValues) {
+			assertTrue(StatisticKernel.cachedValues.size() <= StatisticKernel.MAX_CACHED_KERNELS);
+		}
+		assertTrue(StatisticKernel.kernelValues(4., KernelType.TRICUBE) == StatisticKernel.kernelValues(4., KernelType.TRICUBE));
+	}
+
+}
@@ -0,0 +1,112 @@
+package fr.caladan.slickgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class TimestampBufferTest {
+
+	@Test
+	public void testAcrossChunks() {
+		TimestampBuffer buffer = new TimestampBuffer();
+		int size = 3 * TimestampBuffer.CHUNK_SIZE + 17;
+		for (int i = 0; i < size; i++) {
+			buffer.add(2. * i);
+		}
+
+		assertEquals(size, buffer.size());
+		assertTrue(buffer.first() == 0.);
+		assertTrue(buffer.last() == 2. * (size - 1));
+		for (long i = 0; i < size; i += 997) {
+			assertTrue(buffer.get(i) == 2. * i);
+		}
+	}
+
+	@Test
+	public void testLowerBound() {
+		double[] values = new double[2 * TimestampBuffer.CHUNK_SIZE + 5];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 2. * i;
+		}
+		TimestampBuffer buffer = new TimestampBuffer(values);
+
+		assertEquals(0, buffer.lowerBound(-1.));
+		assertEquals(0, buffer.lowerBound(0.));
+		assertEquals(values.length, buffer.lowerBound(values[values.length - 1] + 1.));
+		for (int i = 1; i < values.length; i += 311) {
+			assertEquals(i, buffer.lowerBound(values[i]));
+			assertEquals(i, buffer.lowerBound(values[i] - 1.));
+		}
+
+		// bounds falling right on the chunk boundaries
+		int c = TimestampBuffer.CHUNK_SIZE;
+		assertEquals(c, buffer.lowerBound(values[c]));
+		assertEquals(c, buffer.lowerBound(values[c - 1] + 1.));
+		assertEquals(c - 1, buffer.lowerBound(values[c - 1]));
+	}
+
+	@Test
+	public void testLowerBoundsMatchIndependentSearches() {
+		Random random = new Random(11);
+		double[] values = new double[100000];
+		values[0] = random.nextDouble();
+		for (int i = 1; i < values.length; i++) {
+			// dense bursts and long gaps, so that both the linear scan and the gallop are used
+			values[i] = values[i - 1] + (random.nextDouble() < .01 ? 1000. : random.nextDouble());
+		}
+		TimestampBuffer buffer = new TimestampBuffer(values);
+
+		for (double step : new double[] { .1, 3., 250., 20000. }) {
+			int nbBounds = (int) Math.min(50000, (values[values.length - 1] + 10.) / step);
+			double[] bounds = new double[nbBounds];
+			for (int i = 0; i < nbBounds; i++) {
+				bounds[i] = -5. + i * step;
+			}
+
+			long[] indices = new long[nbBounds];
+			buffer.lowerBounds(bounds, indices, 0, nbBounds);
+			for (int i = 0; i < nbBounds; i++) {
+				assertEquals(buffer.lowerBound(bounds[i]), indices[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testListView() throws Exception {
+		Timeseries ts = Timeseries.fromArray("ts", Color.BLACK, new double[] { 1., 2., 5. });
+		List<Double> data = ts.getData();
+
+		assertEquals(3, data.size());
+		assertTrue(data.get(2) == 5.);
+
+		// the timestamps are replaced by a new buffer, the previous one being left as is for the threads still reading it
+		Timestamps previous = ts.getTimestamps();
+		ts.setTimestamps(new double[] { 3., 4. });
+		assertEquals(2, ts.getTimestamps().size());
+		assertEquals(2, data.size());
+		assertEquals(3, previous.size());
+		assertTrue(previous.last() == 5.);
+
+		// the list view is read-only, the timestamps are changed through the timeseries
+		try {
+			data.add(6.);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			assertEquals(2, ts.getTimestamps().size());
+		}
+		assertTrue(new Timeseries("ts", Color.BLACK, null).getTimestamps().isEmpty());
+	}
+
+	@Test(expected = Exception.class)
+	public void testInvalidTimestamps() throws Exception {
+		new Timeseries().setTimestamps(new double[] { 1., 3., 2. });
+	}
+
+}
@@ -0,0 +1,70 @@
+package fr.caladan.slickgraph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class VertexBufferTest {
+
+	@Test
+	public void testResizeReusesArrays() {
+		VertexBuffer vertices = new VertexBuffer(100);
+		double[] x = vertices.x;
+
+		vertices.resize(80);
+		assertEquals(80, vertices.getSize());
+		assertTrue(vertices.x == x);
+
+		vertices.resize(120);
+		assertEquals(120, vertices.getSize());
+		vertices.set(119, 119., 10., 20.);
+		assertEquals(119., vertices.getX(119), 0.);
+		assertEquals(10., vertices.getTop(119), 0.);
+		assertEquals(20., vertices.getBottom(119), 0.);
+	}
+
+	@Test
+	public void testOutline() {
+		VertexBuffer vertices = new VertexBuffer();
+		vertices.resize(3);
+		for (int i = 0; i < 3; i++) {
+			vertices.set(i, i, 10. - i, 20. + i);
+		}
+		vertices.buildOutline();
+
+		assertEquals(6, vertices.getOutlineSize());
+		assertArrayEquals(new double[] { 0., 1., 2., 2., 1., 0. }, Arrays.copyOf(vertices.getOutlineX(), 6), 0.);
+		assertArrayEquals(new double[] { 10., 9., 8., 22., 21., 20. }, Arrays.copyOf(vertices.getOutlineY(), 6), 0.);
+	}
+
+	@Test
+	public void testSearchStack() {
+		// 1000 stacked timeseries of 1 pixel each in the first column and 2 pixels in the second one, every third one being empty
+		VertexBuffer[] stack = new VertexBuffer[1000];
+		double bottom = 2000.;
+		for (int i = 0; i < stack.length; i++) {
+			double height = i % 3 == 2 ? 0. : 1.;
+			stack[i] = new VertexBuffer(2);
+			stack[i].resize(2);
+			stack[i].set(0, 0., bottom - height, bottom);
+			stack[i].set(1, 1., 2000. - (2000. - bottom + height) * 2., 2000. - (2000. - bottom) * 2.);
+			bottom -= height;
+		}
+
+		for (int i = 0; i < stack.length; i++) {
+			if (i % 3 != 2) {
+				assertEquals(i, VertexBuffer.searchStack(stack, 0, stack[i].getTop(0) + .5));
+				assertEquals(i, VertexBuffer.searchStack(stack, 1, stack[i].getTop(1) + 1.5));
+			}
+		}
+		assertEquals(-1, VertexBuffer.searchStack(stack, 0, 10.));
+		assertEquals(-1, VertexBuffer.searchStack(stack, 1, stack[stack.length - 1].getTop(1) - .5));
+		assertEquals(-1, VertexBuffer.searchStack(stack, 2, 1999.));
+		assertEquals(-1, VertexBuffer.searchStack(new VertexBuffer[0], 0, 1999.));
+	}
+
+}
@@ -0,0 +1,139 @@
+package fr.caladan.slickgraph.dataloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import fr.caladan.slickgraph.HistogramList;
+import fr.caladan.slickgraph.Timeseries;
+import javafx.scene.paint.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingTimeseriesLoaderTest {
+
+	private List<Timeseries> timeseries;
+
+	@Before
+	public void generateTimeseries() {
+		timeseries = new ArrayList<Timeseries>();
+		for (int t = 0; t < 2; t++) {
+			double[] data = new double[5000];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = i * (t + 1.) + Math.sin(i);
+			}
+			timeseries.add(Timeseries.fromArray("ts " + t, Color.BLACK, data));
+		}
+	}
+
+	@Test
+	public void testZoomBackIsCached() {
+		CachingTimeseriesLoader loader = new CachingTimeseriesLoader(new InMemoryTimeseriesLoader(timeseries), 1L << 20);
+		loader.setNbTimeSlices(200);
+		loader.setPixelsToTrim(8);
+		loader.updateTimeWindow(0., 4000.);
+		List<Double> initial = loader.getHistograms().get(timeseries.get(0));
+		assertEquals(0, loader.getCache().getHitCount());
+
+		loader.updateTimeWindow(1000., 3000.);
+		loader.updateTimeWindow(0., 4000.);
+		assertEquals(2, loader.getCache().getHitCount());
+		assertTrue(loader.getHistograms().get(timeseries.get(0)) == initial);
+
+		// the cached histograms are the ones the wrapped loader computes
+		InMemoryTimeseriesLoader reference = new InMemoryTimeseriesLoader(timeseries);
+		reference.setNbTimeSlices(200);
+		reference.setPixelsToTrim(8);
+		reference.updateTimeWindow(0., 4000.);
+		assertEquals(reference.getHistograms().get(timeseries.get(1)), loader.getHistograms().get(timeseries.get(1)));
+	}
+
+	@Test
+	public void testZoomStepsAreCached() {
+		CachingTimeseriesLoader loader = new CachingTimeseriesLoader(new InMemoryTimeseriesLoader(timeseries), 1L << 20);
+		loader.setNbTimeSlices(1000);
+		loader.setPixelsToTrim(8);
+		loader.updateTimeWindow(.3, 4321.7);
+		List<Double> initial = loader.getHistograms().get(timeseries.get(0));
+
+		// zooming out is the inverse of zooming in, each time window zooming back out is found in the cache
+		for (int i = 0; i < 3; i++) {
+			loader.zoom(120.);
+		}
+		assertEquals(0, loader.getCache().getHitCount());
+		for (int i = 0; i < 3; i++) {
+			loader.zoom(-120.);
+		}
+		assertEquals(6, loader.getCache().getHitCount());
+		assertTrue(loader.getHistograms().get(timeseries.get(0)) == initial);
+		assertEquals(.3, loader.getStartTimeWindow(), 1e-9);
+		assertEquals(4321.7, loader.getEndTimeWindow(), 1e-9);
+	}
+
+	@Test
+	public void testCacheInvalidatedWhenDataReplaced() throws Exception {
+		CachingTimeseriesLoader loader = new CachingTimeseriesLoader(new InMemoryTimeseriesLoader(timeseries), 1L << 20);
+		loader.setNbTimeSlices(200);
+		loader.setPixelsToTrim(8);
+		loader.updateTimeWindow(0., 4000.);
+
+		double[] data = new double[5000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = i * .5;
+		}
+		timeseries.get(0).setTimestamps(data);
+		loader.updateTimeWindow(0., 4000.);
+		assertEquals(0, loader.getCache().getHitCount());
+
+		InMemoryTimeseriesLoader reference = new InMemoryTimeseriesLoader(timeseries);
+		reference.setNbTimeSlices(200);
+		reference.setPixelsToTrim(8);
+		reference.updateTimeWindow(0., 4000.);
+		assertEquals(reference.getHistograms().get(timeseries.get(0)), loader.getHistograms().get(timeseries.get(0)));
+	}
+
+	@Test
+	public void testCachedWindowCancelsWrappedRequest() {
+		InMemoryTimeseriesLoader wrapped = new InMemoryTimeseriesLoader(timeseries);
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		wrapped.setExecutor(tasks::add);
+		CachingTimeseriesLoader loader = new CachingTimeseriesLoader(wrapped, 1L << 20);
+		loader.setNbTimeSlices(200);
+		loader.setPixelsToTrim(8);
+		loader.updateTimeWindow(0., 4000.);
+
+		CompletableFuture<Map<Timeseries, List<Double>>> pending = loader.updateTimeWindowAsync(1000., 3000.);
+		CompletableFuture<Map<Timeseries, List<Double>>> request = loader.pendingRequest;
+		List<Double> cached = loader.getHistograms().get(timeseries.get(0));
+		assertTrue(loader.updateTimeWindowAsync(0., 4000.).isDone());
+		assertTrue(pending.isCancelled());
+		assertTrue(request.isCancelled());
+
+		// the wrapped loader does not compute the cancelled window
+		tasks.forEach(Runnable::run);
+		assertTrue(wrapped.getHistograms().get(timeseries.get(0)) == cached);
+	}
+
+	@Test
+	public void testEviction() {
+		HistogramCache cache = new HistogramCache(3 * HistogramCache.sizeOf(new HistogramList(new double[215])));
+		CachingTimeseriesLoader loader = new CachingTimeseriesLoader(new InMemoryTimeseriesLoader(timeseries), cache);
+		loader.setNbTimeSlices(200);
+		loader.setPixelsToTrim(8);
+
+		loader.updateTimeWindow(0., 1000.);
+		loader.updateTimeWindow(0., 2000.);
+		assertTrue(cache.getSize() <= cache.getCapacity());
+
+		// the oldest window has been evicted
+		loader.updateTimeWindow(0., 1000.);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+	}
+
+}
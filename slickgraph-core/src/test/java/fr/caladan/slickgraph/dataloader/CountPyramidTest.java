@@ -0,0 +1,125 @@
+package fr.caladan.slickgraph.dataloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import fr.caladan.slickgraph.Timeseries;
+import fr.caladan.slickgraph.TimestampBuffer;
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class CountPyramidTest {
+
+	private static double[] generate(int size) {
+		Random random = new Random(42);
+		double[] data = new double[size];
+		data[0] = 0.01;
+		for (int i = 1; i < size; i++) {
+			data[i] = data[i - 1] + -Math.log(1. - random.nextDouble()) / .01;
+		}
+		return data;
+	}
+
+	@Test
+	public void testExactBounds() {
+		TimestampBuffer timestamps = new TimestampBuffer(generate(50000));
+		CountPyramid pyramid = new CountPyramid(timestamps, 10);
+
+		for (int l = 0; l <= pyramid.getDepth(); l++) {
+			for (double t = -10.; t < timestamps.last() + 100.; t += 997.3) {
+				assertEquals(timestamps.lowerBound(t), pyramid.lowerBound(t, l, false));
+			}
+		}
+		assertEquals(timestamps.lowerBound(timestamps.last()), pyramid.lowerBound(timestamps.last(), 10, false));
+	}
+
+	@Test
+	public void testInterpolatedBounds() {
+		TimestampBuffer timestamps = new TimestampBuffer(generate(50000));
+		CountPyramid pyramid = new CountPyramid(timestamps, 12);
+
+		double sliceDuration = timestamps.last() / 500.;
+		int level = pyramid.selectLevel(sliceDuration, .25);
+		assertTrue(level >= 0);
+		for (double t = 0; t < timestamps.last(); t += sliceDuration) {
+			long error = Math.abs(timestamps.lowerBound(t) - pyramid.lowerBound(t, level, true));
+			assertTrue(error <= pyramid.getMaxBucketCount(level));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDepth() {
+		new InMemoryTimeseriesLoader(new ArrayList<Timeseries>()).setCountPyramidDepth(CountPyramid.MAX_DEPTH + 1);
+	}
+
+	@Test
+	public void testLoaderHistograms() {
+		List<Timeseries> timeseries = new ArrayList<Timeseries>();
+		timeseries.add(Timeseries.fromArray("", Color.BLACK, generate(20000)));
+		AbstractTimeseriesLoader direct = new InMemoryTimeseriesLoader(timeseries);
+		AbstractTimeseriesLoader pyramid = new InMemoryTimeseriesLoader(timeseries);
+		pyramid.setCountPyramidDepth(14);
+
+		for (AbstractTimeseriesLoader loader : new AbstractTimeseriesLoader[] { direct, pyramid }) {
+			loader.setNbTimeSlices(1000);
+			loader.setPixelsToTrim(16);
+			loader.updateTimeWindow(loader.getStartGlobal() + 5000., loader.getEndGlobal() / 3.);
+		}
+		assertEquals(direct.getHistograms().get(timeseries.get(0)), pyramid.getHistograms().get(timeseries.get(0)));
+	}
+
+	@Test
+	public void testInterpolatedBoundsNotReusedOnceExact() {
+		List<Timeseries> timeseries = new ArrayList<Timeseries>();
+		timeseries.add(Timeseries.fromArray("", Color.BLACK, generate(20000)));
+		AbstractTimeseriesLoader direct = new InMemoryTimeseriesLoader(timeseries);
+		AbstractTimeseriesLoader pyramid = new InMemoryTimeseriesLoader(timeseries);
+		pyramid.setCountPyramidDepth(14);
+		pyramid.setCountPyramidTolerance(1000.);
+
+		for (AbstractTimeseriesLoader loader : new AbstractTimeseriesLoader[] { direct, pyramid }) {
+			loader.setNbTimeSlices(1000);
+			loader.setPixelsToTrim(16);
+			loader.updateTimeWindow(5000., 1005000.);
+		}
+		assertTrue(!direct.getHistograms().get(timeseries.get(0)).equals(pyramid.getHistograms().get(timeseries.get(0))));
+
+		// the bounds of the panned time window overlap the interpolated ones, which must be located again
+		pyramid.setCountPyramidTolerance(0.);
+		direct.pan(100.);
+		pyramid.pan(100.);
+		assertEquals(direct.getHistograms().get(timeseries.get(0)), pyramid.getHistograms().get(timeseries.get(0)));
+	}
+
+	@Test
+	public void testPyramidRebuiltWhenDataReplaced() throws Exception {
+		List<Timeseries> timeseries = new ArrayList<Timeseries>();
+		double[] data = generate(20000);
+		timeseries.add(Timeseries.fromArray("", Color.BLACK, data));
+		AbstractTimeseriesLoader loader = new InMemoryTimeseriesLoader(timeseries);
+		loader.setCountPyramidDepth(6);
+		loader.setNbTimeSlices(1000);
+		loader.setPixelsToTrim(16);
+		loader.updateTimeWindow(5000., 700000.);
+
+		// same number of timestamps, so only the modification count tells the pyramid is outdated
+		double[] replaced = new double[data.length];
+		for (int i = 0; i < data.length; i++) {
+			replaced[i] = data[i] * .9;
+		}
+		timeseries.get(0).setTimestamps(replaced);
+		loader.updateTimeWindow(12345.6, 654321.);
+
+		AbstractTimeseriesLoader fresh = new InMemoryTimeseriesLoader(timeseries);
+		fresh.setNbTimeSlices(1000);
+		fresh.setPixelsToTrim(16);
+		fresh.updateTimeWindow(12345.6, 654321.);
+		assertEquals(fresh.getHistograms().get(timeseries.get(0)), loader.getHistograms().get(timeseries.get(0)));
+	}
+
+}
@@ -0,0 +1,267 @@
+package fr.caladan.slickgraph.dataloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import fr.caladan.slickgraph.Timeseries;
+import javafx.scene.paint.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryTimeseriesLoaderTest {
+
+	private List<Timeseries> timeseries;
+
+	@Before
+	public void generateTimeseries() {
+		Random random = new Random(7);
+		timeseries = new ArrayList<Timeseries>();
+		for (int t = 0; t < 3; t++) {
+			double[] data = new double[20000];
+			data[0] = random.nextDouble();
+			for (int i = 1; i < data.length; i++) {
+				data[i] = data[i - 1] + -Math.log(1. - random.nextDouble()) / .01;
+			}
+			timeseries.add(Timeseries.fromArray("ts " + t, Color.BLACK, data));
+		}
+	}
+
+	private InMemoryTimeseriesLoader createLoader() {
+		InMemoryTimeseriesLoader loader = new InMemoryTimeseriesLoader(timeseries);
+		loader.setNbTimeSlices(640);
+		loader.setPixelsToTrim(16);
+		loader.updateTimeWindow(loader.getStartGlobal() + 100000., loader.getStartGlobal() + 900000.);
+		return loader;
+	}
+
+	@Test
+	public void testPanMatchesFullUpdate() {
+		InMemoryTimeseriesLoader loader = createLoader();
+
+		double[] deltas = { 3., -1.5, .7, .8, 25., -700., 12.25, 1000., -4. };
+		for (double delta : deltas) {
+			loader.pan(delta);
+
+			InMemoryTimeseriesLoader reference = createLoader();
+			reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+			for (Timeseries ts : timeseries) {
+				assertEquals(reference.getHistograms().get(ts), loader.getHistograms().get(ts));
+			}
+		}
+	}
+
+	@Test
+	public void testBoundsDroppedWhenDataReplaced() throws Exception {
+		InMemoryTimeseriesLoader loader = createLoader();
+		loader.setCountPyramidDepth(0);
+		loader.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+
+		// same number of timestamps, so only the modification count tells the located bounds are outdated
+		Timeseries replaced = timeseries.get(0);
+		double[] data = new double[(int) replaced.getTimestamps().size()];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = replaced.getTimestamps().get(i) * .9;
+		}
+		replaced.setTimestamps(data);
+		loader.pan(3.);
+
+		InMemoryTimeseriesLoader reference = createLoader();
+		reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+		for (Timeseries ts : timeseries) {
+			assertEquals(reference.getHistograms().get(ts), loader.getHistograms().get(ts));
+		}
+	}
+
+	@Test
+	public void testPanCarriesSubPixelRemainder() {
+		InMemoryTimeseriesLoader loader = createLoader();
+		double start = loader.getStartTimeWindow();
+		double sliceDuration = (loader.getEndTimeWindow() - start) / loader.getNbTimeSlices();
+
+		loader.pan(.4);
+		assertTrue(loader.getStartTimeWindow() == start);
+		loader.pan(.4);
+		assertTrue(loader.getStartTimeWindow() == start);
+		loader.pan(.4);
+		assertEquals(start + sliceDuration, loader.getStartTimeWindow(), sliceDuration * 1e-6);
+	}
+
+	@Test
+	public void testAsyncDeliversLatestWindow() throws Exception {
+		InMemoryTimeseriesLoader loader = createLoader();
+		double start = loader.getStartTimeWindow();
+		double end = loader.getEndTimeWindow();
+
+		List<CompletableFuture<Map<Timeseries, List<Double>>>> futures = new ArrayList<CompletableFuture<Map<Timeseries, List<Double>>>>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(loader.updateTimeWindowAsync(start + i * 1000., end + i * 1000.));
+		}
+		futures.add(loader.panAsync(12.));
+		futures.add(loader.zoomAsync(1.));
+		Map<Timeseries, List<Double>> latest = futures.get(futures.size() - 1).get(10, TimeUnit.SECONDS);
+
+		// superseded requests are either cancelled or completed, never left pending
+		for (CompletableFuture<Map<Timeseries, List<Double>>> future : futures) {
+			assertTrue(future.isDone());
+		}
+
+		InMemoryTimeseriesLoader reference = createLoader();
+		reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+		for (Timeseries ts : timeseries) {
+			assertEquals(reference.getHistograms().get(ts), latest.get(ts));
+			assertEquals(reference.getHistograms().get(ts), loader.getHistograms().get(ts));
+		}
+	}
+
+	@Test
+	public void testParallelBinningMatchesSequential() {
+		InMemoryTimeseriesLoader reference = createLoader();
+
+		for (int depth : new int[] { 0, 6 }) {
+			InMemoryTimeseriesLoader loader = new InMemoryTimeseriesLoader(timeseries.subList(0, 1));
+			loader.setParallelThreshold(0);
+			loader.setCountPyramidDepth(depth);
+			loader.setNbTimeSlices(640);
+			loader.setPixelsToTrim(16);
+			assertTrue(loader.getNbChunks(timeseries.get(0), loader.getTotalSize()) > 1 || Runtime.getRuntime().availableProcessors() == 1);
+
+			loader.updateTimeWindow(reference.getStartTimeWindow(), reference.getEndTimeWindow());
+			assertEquals(reference.getHistograms().get(timeseries.get(0)), loader.getHistograms().get(timeseries.get(0)));
+			loader.pan(100.);
+			reference.pan(100.);
+			assertEquals(reference.getHistograms().get(timeseries.get(0)), loader.getHistograms().get(timeseries.get(0)));
+		}
+	}
+
+	@Test
+	public void testPreviewSpreadsCoarseBins() {
+		InMemoryTimeseriesLoader loader = createLoader();
+		Map<Timeseries, List<Double>> exact = new HashMap<Timeseries, List<Double>>(loader.getHistograms());
+
+		loader.setPreview(true);
+		loader.pan(3.);
+		loader.pan(-3.);
+		for (Timeseries ts : timeseries) {
+			List<Double> preview = loader.getHistograms().get(ts);
+			assertEquals(exact.get(ts).size(), preview.size());
+
+			// each coarse bin holds the events of its pixels
+			int first = (int) Math.floorMod(-loader.grid.offset, (long) loader.getPreviewBinWidth());
+			for (int from = first; from + 4 <= preview.size(); from += 4) {
+				double expected = 0.;
+				for (int i = from; i < from + 4; i++) {
+					expected += exact.get(ts).get(i);
+					assertEquals(preview.get(from), preview.get(i), 0.);
+				}
+				assertEquals(expected, 4 * preview.get(from), 1e-9);
+			}
+		}
+
+		loader.setPreview(false);
+		loader.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+		for (Timeseries ts : timeseries) {
+			assertEquals(exact.get(ts), loader.getHistograms().get(ts));
+		}
+	}
+
+	@Test
+	public void testPrefetchedWindowsMatchFullUpdate() throws Exception {
+		InMemoryTimeseriesLoader loader = createLoader();
+		loader.setPrefetchEnabled(true);
+		loader.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+
+		// all the bounds of the neighbouring time windows have been prefetched, none is located again
+		loader.getPrefetchFuture().get(10, TimeUnit.SECONDS);
+		long nbLocatedBounds = loader.getNbLocatedBounds();
+		loader.pan(640.);
+		assertEquals(nbLocatedBounds, loader.getNbLocatedBounds());
+		InMemoryTimeseriesLoader reference = createLoader();
+		reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+		for (Timeseries ts : timeseries) {
+			assertEquals(reference.getHistograms().get(ts), loader.getHistograms().get(ts));
+		}
+
+		loader.getPrefetchFuture().get(10, TimeUnit.SECONDS);
+		loader.zoom(-1.);
+		assertEquals(nbLocatedBounds, loader.getNbLocatedBounds());
+		reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+		for (Timeseries ts : timeseries) {
+			assertEquals(reference.getHistograms().get(ts), loader.getHistograms().get(ts));
+		}
+	}
+
+	@Test
+	public void testAppendMatchesFullUpdate() throws Exception {
+		Timeseries live = timeseries.get(0);
+		double last = live.getTimestamps().last();
+		InMemoryTimeseriesLoader loader = createLoader();
+		loader.updateTimeWindow(last - 500000., last + 300000.);
+
+		Random random = new Random(11);
+		for (int batch = 0; batch < 20; batch++) {
+			double[] data = new double[random.nextInt(200)];
+			for (int i = 0; i < data.length; i++) {
+				last += -Math.log(1. - random.nextDouble()) / .01;
+				data[i] = last;
+			}
+			long from = live.getTimestamps().size();
+			live.append(data);
+			Map<Timeseries, List<Double>> appended = loader.appendAsync(live, from).get(10, TimeUnit.SECONDS);
+
+			InMemoryTimeseriesLoader reference = createLoader();
+			reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+			assertEquals(reference.getHistograms().get(live), loader.getHistograms().get(live));
+			assertTrue(appended.isEmpty() || appended.get(live) == loader.getHistograms().get(live));
+			assertEquals(last, loader.getEndGlobal(), 0.);
+		}
+
+		// the bounds located after the previous last event are not reused
+		loader.pan(100.);
+		InMemoryTimeseriesLoader reference = createLoader();
+		reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+		for (Timeseries ts : timeseries) {
+			assertEquals(reference.getHistograms().get(ts), loader.getHistograms().get(ts));
+		}
+	}
+
+	@Test
+	public void testAppendWaitsForPendingWindow() throws Exception {
+		Timeseries live = timeseries.get(0);
+		double last = live.getTimestamps().last();
+		InMemoryTimeseriesLoader loader = createLoader();
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		loader.setExecutor(tasks::add);
+		CompletableFuture<Map<Timeseries, List<Double>>> window = loader.updateTimeWindowAsync(last - 500000., last + 300000.);
+
+		long from = live.getTimestamps().size();
+		live.append(new double[] { last + 100., last + 200., last + 250000. });
+		CompletableFuture<Map<Timeseries, List<Double>>> appended = loader.appendAsync(live, from);
+		assertTrue(!appended.isDone());
+
+		// the append is handled once the time window is computed
+		while (!tasks.isEmpty()) {
+			tasks.remove(0).run();
+		}
+		assertTrue(window.isDone());
+		InMemoryTimeseriesLoader reference = createLoader();
+		reference.updateTimeWindow(loader.getStartTimeWindow(), loader.getEndTimeWindow());
+		assertEquals(reference.getHistograms().get(live), appended.get(10, TimeUnit.SECONDS).get(live));
+		assertEquals(reference.getHistograms().get(live), loader.getHistograms().get(live));
+	}
+
+	@Test(expected = Exception.class)
+	public void testAppendChecksTail() throws Exception {
+		Timeseries live = timeseries.get(0);
+		live.append(new double[] { live.getTimestamps().last() });
+	}
+
+}
@@ -0,0 +1,77 @@
+package fr.caladan.slickgraph.dataloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.caladan.slickgraph.Timeseries;
+import fr.caladan.slickgraph.TimestampBuffer;
+import javafx.scene.paint.Color;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedFileTimeseriesLoaderTest {
+
+	private Path file;
+
+	private double[] data;
+
+	@Before
+	public void writeFile() throws IOException {
+		data = new double[10000];
+		data[0] = 1.;
+		for (int i = 1; i < data.length; i++) {
+			data[i] = data[i - 1] + 1. + (i % 7);
+		}
+
+		file = Files.createTempFile("slickgraph", ".slgt");
+		MappedTimestamps.write(file, new TimestampBuffer(data));
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testMappedTimestamps() throws IOException {
+		MappedTimestamps timestamps = new MappedTimestamps(file);
+
+		assertEquals(data.length, timestamps.size());
+		assertTrue(timestamps.first() == data[0]);
+		assertTrue(timestamps.last() == data[data.length - 1]);
+		for (int i = 0; i < data.length; i += 37) {
+			assertTrue(timestamps.get(i) == data[i]);
+			assertEquals(i, timestamps.lowerBound(data[i]));
+			assertEquals(i + 1, timestamps.lowerBound(data[i] + .5));
+		}
+	}
+
+	@Test
+	public void testSameHistogramsAsInMemory() throws IOException {
+		List<Timeseries> timeseries = new ArrayList<Timeseries>();
+		timeseries.add(Timeseries.fromArray("", Color.BLACK, data));
+		TimeseriesLoader inMemory = new InMemoryTimeseriesLoader(timeseries);
+		TimeseriesLoader mapped = new MappedFileTimeseriesLoader(Arrays.asList(file));
+
+		assertTrue(inMemory.getStartGlobal() == mapped.getStartGlobal());
+		assertTrue(inMemory.getEndGlobal() == mapped.getEndGlobal());
+
+		for (TimeseriesLoader loader : Arrays.asList(inMemory, mapped)) {
+			loader.setNbTimeSlices(800);
+			loader.setPixelsToTrim(16);
+			loader.updateTimeWindow(1000., 30000.);
+		}
+		assertEquals(inMemory.getHistograms().get(timeseries.get(0)),
+				mapped.getHistograms().get(mapped.getTimeseries().get(0)));
+	}
+
+}
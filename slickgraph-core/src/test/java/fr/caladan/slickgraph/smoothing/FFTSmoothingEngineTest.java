@@ -0,0 +1,55 @@
+package fr.caladan.slickgraph.smoothing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+import org.junit.Test;
+
+public class FFTSmoothingEngineTest {
+
+	@Test
+	public void testMatchesDirectConvolution() {
+		Random random = new Random(5);
+		SmoothingEngine direct = new DirectSmoothingEngine();
+		SmoothingEngine fft = new FFTSmoothingEngine();
+
+		int[] sizes = { 1, 17, 640, 1000 };
+		double[] bandWidths = { 1., 3.3, 30., 200. };
+		for (int size : sizes) {
+			for (double bandWidth : bandWidths) {
+				double[] histogram = new double[size];
+				for (int i = 0; i < size; i++) {
+					histogram[i] = random.nextInt(50);
+				}
+
+				double[] expected = direct.smooth(histogram, bandWidth, KernelType.GAUSSIAN);
+				double[] actual = fft.smooth(histogram, bandWidth, KernelType.GAUSSIAN);
+				assertEquals(size, actual.length);
+
+				// the direct convolution leaves the first two pixels empty, they are always trimmed
+				for (int i = 2; i < size; i++) {
+					assertEquals(expected[i], actual[i], 1e-9 * (1. + Math.abs(expected[i])));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSpectrumSharedByTimeseries() {
+		FFTSmoothingEngine fft = new FFTSmoothingEngine();
+		for (int t = 0; t < 200; t++) {
+			fft.smooth(new double[700], 30., KernelType.GAUSSIAN);
+		}
+		assertEquals(1, fft.spectra.size());
+
+		fft.smooth(new double[3000], 30., KernelType.GAUSSIAN);
+		fft.smooth(new double[700], 31., KernelType.GAUSSIAN);
+		assertEquals(3, fft.spectra.size());
+		assertTrue(fft.spectra.size() <= FFTSmoothingEngine.MAX_CACHED_SPECTRA);
+	}
+
+}
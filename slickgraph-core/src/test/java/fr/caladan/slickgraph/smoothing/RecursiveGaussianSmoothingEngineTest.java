@@ -0,0 +1,56 @@
+package fr.caladan.slickgraph.smoothing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+import org.junit.Test;
+
+public class RecursiveGaussianSmoothingEngineTest {
+
+	@Test
+	public void testAccuracyAgainstDirectConvolution() {
+		Random random = new Random(3);
+		SmoothingEngine direct = new DirectSmoothingEngine();
+		SmoothingEngine recursive = new RecursiveGaussianSmoothingEngine();
+
+		double[] bandWidths = { 1., 1.5, 2.5, 4., 7.3, 12., 25., 60. };
+		for (double bandWidth : bandWidths) {
+			double[] histogram = new double[1200];
+			for (int i = 0; i < histogram.length; i++) {
+				histogram[i] = random.nextDouble() < .3 ? random.nextInt(20) : 0.;
+			}
+			histogram[600] = 500.;
+
+			double[] expected = direct.smooth(histogram, bandWidth, KernelType.GAUSSIAN);
+			double[] actual = recursive.smooth(histogram, bandWidth, KernelType.GAUSSIAN);
+			assertEquals(histogram.length, actual.length);
+
+			// the direct convolution leaves the first two pixels empty, they are always trimmed
+			double max = 0.;
+			double error = 0.;
+			for (int i = 2; i < histogram.length; i++) {
+				max = Math.max(max, Math.abs(expected[i]));
+				error = Math.max(error, Math.abs(expected[i] - actual[i]));
+			}
+			assertTrue("bandwidth " + bandWidth + ": " + error / max, error <= RecursiveGaussianSmoothingEngine.ACCURACY * max);
+		}
+	}
+
+	@Test
+	public void testPreservesMass() {
+		double[] histogram = new double[400];
+		histogram[200] = 1.;
+		double[] smoothed = new RecursiveGaussianSmoothingEngine().smooth(histogram, 20., KernelType.GAUSSIAN);
+
+		double sum = 0.;
+		for (double v : smoothed) {
+			sum += v;
+		}
+		assertEquals(1., sum, 1e-6);
+	}
+
+}
@@ -0,0 +1,92 @@
+package fr.caladan.slickgraph.smoothing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+import fr.caladan.slickgraph.Timeseries;
+import javafx.scene.paint.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScaleSpaceTest {
+
+	private Timeseries timeseries;
+
+	private Map<Timeseries, List<Double>> histograms;
+
+	private SmoothingEngine engine;
+
+	@Before
+	public void generateHistogram() {
+		Random random = new Random(11);
+		timeseries = Timeseries.fromArray("ts", Color.BLACK, new double[] { 0., 1. });
+		List<Double> histogram = new ArrayList<Double>();
+		for (int i = 0; i < 800; i++) {
+			histogram.add(random.nextDouble() < .4 ? random.nextInt(10) + 0. : 0.);
+		}
+		histograms = new HashMap<Timeseries, List<Double>>();
+		histograms.put(timeseries, histogram);
+		engine = new RecursiveGaussianSmoothingEngine();
+	}
+
+	private double[] values() {
+		return histograms.get(timeseries).stream().mapToDouble(Double::doubleValue).toArray();
+	}
+
+	@Test
+	public void testLadder() {
+		double[] bandWidths = ScaleSpace.ladder(1., 30., 1.25);
+		assertEquals(1., bandWidths[0], 0.);
+		assertEquals(30., bandWidths[bandWidths.length - 1], 0.);
+		for (int l = 1; l < bandWidths.length; l++) {
+			assertTrue(bandWidths[l] / bandWidths[l - 1] <= 1.25 + 1e-12);
+		}
+	}
+
+	@Test
+	public void testInterpolation() {
+		double[] bandWidths = ScaleSpace.ladder(1., 30., 1.25);
+		ScaleSpace scaleSpace = ScaleSpace.build(histograms, bandWidths, KernelType.GAUSSIAN, engine, () -> false);
+
+		// exact on the levels
+		assertArrayEquals(engine.smooth(values(), bandWidths[4], KernelType.GAUSSIAN), scaleSpace.interpolate(timeseries, bandWidths[4]), 1e-12);
+
+		// close to the exact smoothing between them
+		double bandWidth = (bandWidths[6] + bandWidths[7]) / 2.;
+		double[] expected = engine.smooth(values(), bandWidth, KernelType.GAUSSIAN);
+		double[] actual = scaleSpace.interpolate(timeseries, bandWidth);
+		double max = 0.;
+		double error = 0.;
+		for (int i = 0; i < expected.length; i++) {
+			max = Math.max(max, expected[i]);
+			error = Math.max(error, Math.abs(expected[i] - actual[i]));
+		}
+		assertTrue(error < .1 * max);
+	}
+
+	@Test
+	public void testCovers() {
+		ScaleSpace scaleSpace = ScaleSpace.build(histograms, ScaleSpace.ladder(1., 30., 1.25), KernelType.GAUSSIAN, engine, () -> false);
+		assertTrue(scaleSpace.covers(histograms, KernelType.GAUSSIAN, 12.3));
+		assertFalse(scaleSpace.covers(histograms, KernelType.GAUSSIAN, 31.));
+		assertFalse(scaleSpace.covers(histograms, KernelType.BOX, 12.3));
+
+		Map<Timeseries, List<Double>> updated = new HashMap<Timeseries, List<Double>>();
+		updated.put(timeseries, new ArrayList<Double>(histograms.get(timeseries)));
+		assertFalse(scaleSpace.covers(updated, KernelType.GAUSSIAN, 12.3));
+
+		assertNull(ScaleSpace.build(histograms, ScaleSpace.ladder(1., 30., 1.25), KernelType.GAUSSIAN, engine, () -> true));
+	}
+
+}
@@ -0,0 +1,91 @@
+package fr.caladan.slickgraph.smoothing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import fr.caladan.slickgraph.StatisticKernel;
+import fr.caladan.slickgraph.StatisticKernel.KernelType;
+
+import org.junit.Test;
+
+public class TruncatedSmoothingEngineTest {
+
+	@Test
+	public void testWholeKernelMatchesDirectConvolution() {
+		Random random = new Random(5);
+		double[] histogram = new double[500];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = random.nextInt(10);
+		}
+
+		for (KernelType kernelType : KernelType.values()) {
+			double[] expected = new DirectSmoothingEngine().smooth(histogram, 6., kernelType);
+			double[] actual = new TruncatedSmoothingEngine(1.).smooth(histogram, 6., kernelType);
+
+			// the direct convolution leaves the first two pixels empty, they are always trimmed
+			for (int i = 2; i < histogram.length; i++) {
+				assertEquals(expected[i], actual[i], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testPreservesMass() {
+		double[] histogram = new double[400];
+		histogram[200] = 1.;
+		double[] smoothed = new TruncatedSmoothingEngine().smooth(histogram, 20., KernelType.GAUSSIAN);
+		double kernelSum = 0.;
+		for (double v : StatisticKernel.kernelValues(20., KernelType.GAUSSIAN)) {
+			kernelSum += v;
+		}
+
+		double sum = 0.;
+		for (int i = 0; i < smoothed.length; i++) {
+			sum += smoothed[i];
+			if (Math.abs(i - 200) > 30) {
+				assertEquals(0., smoothed[i], 0.);
+			}
+		}
+		assertEquals(kernelSum, sum, 1e-9);
+	}
+
+	@Test
+	public void testSmoothIntoReusedBuffer() {
+		Random random = new Random(9);
+		double[] histogram = new double[300];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = random.nextInt(10);
+		}
+
+		for (SmoothingEngine engine : new SmoothingEngine[] { new DirectSmoothingEngine(), new TruncatedSmoothingEngine(), new FFTSmoothingEngine() }) {
+			double[] buffer = new double[histogram.length];
+			Arrays.fill(buffer, -1.);
+			engine.smooth(histogram, 4., KernelType.GAUSSIAN, buffer);
+			assertArrayEquals(engine.smooth(histogram, 4., KernelType.GAUSSIAN), buffer, 0.);
+		}
+	}
+
+	@Test
+	public void testSmoothFromKeepsBeginning() {
+		Random random = new Random(3);
+		double[] histogram = new double[300];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = random.nextInt(10);
+		}
+		double[] appended = histogram.clone();
+		for (int i = 280; i < appended.length; i++) {
+			appended[i] += random.nextInt(10);
+		}
+		int radius = StatisticKernel.kernelValues(4., KernelType.GAUSSIAN).length / 2;
+
+		for (SmoothingEngine engine : new SmoothingEngine[] { new DirectSmoothingEngine(), new TruncatedSmoothingEngine(), new FFTSmoothingEngine() }) {
+			double[] buffer = engine.smooth(histogram, 4., KernelType.GAUSSIAN);
+			engine.smooth(appended, 4., KernelType.GAUSSIAN, buffer, 280 - radius);
+			assertArrayEquals(engine.smooth(appended, 4., KernelType.GAUSSIAN), buffer, 0.);
+		}
+	}
+
+}
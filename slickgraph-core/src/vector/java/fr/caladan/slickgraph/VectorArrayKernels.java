@@ -0,0 +1,68 @@
+package fr.caladan.slickgraph;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Inner loops of the binning and of the smoothing, several values at a time with the Vector API.
+ * Needs JDK 16 or later and the jdk.incubator.vector module (--add-modules jdk.incubator.vector).
+ * The lanes compute consecutive values with the same operations in the same order as the scalar loops, so that the results are identical.
+ */
+public class VectorArrayKernels extends ArrayKernels {
+
+	protected static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+	protected static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+	/** Public default constructor - fails if the vectors of longs and doubles do not have the same number of lanes */
+	public VectorArrayKernels() {
+		if (DOUBLES.length() != LONGS.length() || DOUBLES.length() < 2) {
+			throw new UnsupportedOperationException("No usable vector shape");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.ArrayKernels#differences(long[], double, double, double[])
+	 */
+	@Override
+	public void differences(long[] indices, double duration, double nbTimeSlices, double[] histogram) {
+		int i = 0;
+		for (int bound = LONGS.loopBound(histogram.length); i < bound; i += LONGS.length()) {
+			LongVector counts = LongVector.fromArray(LONGS, indices, i + 1).sub(LongVector.fromArray(LONGS, indices, i));
+			DoubleVector values = (DoubleVector) counts.convertShape(VectorOperators.L2D, DOUBLES, 0);
+			values.div(duration).mul(nbTimeSlices).intoArray(histogram, i);
+		}
+		for (; i < histogram.length; i++) {
+			histogram[i] = (indices[i + 1] - indices[i]) / duration * nbTimeSlices;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see fr.caladan.slickgraph.ArrayKernels#convolve(double[], double[], double[], int, int)
+	 */
+	@Override
+	public void convolve(double[] histogram, double[] kernel, double[] smoothed, int from, int to) {
+		int radius = kernel.length / 2;
+
+		// the values whose whole kernel falls in the histogram are computed by vectors
+		int start = Math.min(to, Math.max(from, radius));
+		int end = Math.max(start, Math.min(to, histogram.length - radius));
+		int i = from;
+		for (; i < start; i++) {
+			smoothed[i] = ScalarArrayKernels.convolve(histogram, kernel, i, radius);
+		}
+		for (int bound = start + DOUBLES.loopBound(end - start); i < bound; i += DOUBLES.length()) {
+			DoubleVector value = DoubleVector.zero(DOUBLES);
+			for (int k = 0; k < kernel.length; k++) {
+				value = value.add(DoubleVector.fromArray(DOUBLES, histogram, i + k - radius).mul(kernel[k]));
+			}
+			value.intoArray(smoothed, i);
+		}
+		for (; i < to; i++) {
+			smoothed[i] = ScalarArrayKernels.convolve(histogram, kernel, i, radius);
+		}
+	}
+
+}
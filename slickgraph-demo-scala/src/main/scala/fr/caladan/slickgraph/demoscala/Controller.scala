@@ -51,7 +51,9 @@ class Controller extends SlickGraphController {
     // layout adjustment due to hidpi settings
     slgContainer.height.onChange{ (_, _, newValue) => AnchorPane.setTopAnchor(slgContainer, toolBar.height()) }
 
-    // bind the slider value to the kernel bandwidth
+    // bind the slider value to the kernel bandwidth, smoothing in advance for the whole slider range
+    slickGraph.setScaleSpaceMaxBandWidth(smoothingSlider.getMax)
+    slickGraph.setScaleSpaceEnabled(true)
     smoothingSlider.setValue(slickGraph.getKernelBandWidth)
     slickGraph.kernelBandwidthProperty <== smoothingSlider.value
 
@@ -47,7 +47,9 @@ public class Controller extends SlickGraphController {
 		// layout adjustment due to hidpi settings
 		slgContainer.heightProperty().addListener(e -> AnchorPane.setTopAnchor(slgContainer, toolBar.getHeight()));
 
-		// bind the slider value to the kernel bandwidth
+		// bind the slider value to the kernel bandwidth, smoothing in advance for the whole slider range
+		slickGraph.setScaleSpaceMaxBandWidth(smoothingSlider.getMax());
+		slickGraph.setScaleSpaceEnabled(true);
 		smoothingSlider.setValue(slickGraph.getKernelBandWidth());
 		slickGraph.kernelBandwidthProperty().bind(smoothingSlider.valueProperty());
 